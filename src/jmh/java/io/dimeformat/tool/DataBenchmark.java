@@ -0,0 +1,55 @@
+//
+//  DataBenchmark.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import io.dimeformat.Data;
+import io.dimeformat.Key;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataBenchmark {
+
+    @Param({"1024", "65536", "1048576", "16777216"})
+    public int payloadSize;
+
+    private byte[] payload;
+    private Key key;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        this.payload = new byte[this.payloadSize];
+        new Random(42).nextBytes(this.payload);
+        this.key = Fixtures.signKey();
+    }
+
+    @Benchmark
+    public String create() throws Exception {
+        Data data = new Data(null);
+        data.setPayload(this.payload, "application/octet-stream");
+        return data.exportToEncoded();
+    }
+
+    @Benchmark
+    public String createSigned() throws Exception {
+        Data data = new Data(null);
+        data.setPayload(this.payload, "application/octet-stream");
+        data.sign(this.key);
+        return data.exportToEncoded();
+    }
+
+}
@@ -0,0 +1,38 @@
+//
+//  IirBenchmark.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import io.dimeformat.IdentityIssuingRequest;
+import io.dimeformat.Key;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IirBenchmark {
+
+    private Key key;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        this.key = Fixtures.signKey();
+    }
+
+    @Benchmark
+    public String generateIIR() throws Exception {
+        return IdentityIssuingRequest.generateIIR(this.key, Fixtures.LEAF_CAPABILITIES).exportToEncoded();
+    }
+
+}
@@ -0,0 +1,54 @@
+//
+//  IssueBenchmark.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import io.dimeformat.Dime;
+import io.dimeformat.Identity;
+import io.dimeformat.IdentityIssuingRequest;
+import io.dimeformat.Key;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IssueBenchmark {
+
+    private Key subjectKey;
+    private Key issuerKey;
+    private Identity issuer;
+    private IdentityIssuingRequest selfIir;
+    private IdentityIssuingRequest iir;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        this.subjectKey = Fixtures.signKey();
+        this.issuerKey = Fixtures.signKey();
+        this.issuer = Fixtures.root(this.issuerKey);
+        this.selfIir = IdentityIssuingRequest.generateIIR(this.subjectKey, Fixtures.ISSUER_CAPABILITIES);
+        this.iir = IdentityIssuingRequest.generateIIR(this.subjectKey, Fixtures.LEAF_CAPABILITIES);
+    }
+
+    @Benchmark
+    public String selfIssue() throws Exception {
+        return this.selfIir.selfIssueIdentity(UUID.randomUUID(), Dime.VALID_FOR_1_DAY, this.subjectKey, Fixtures.SYSTEM_NAME, null, null).exportToEncoded();
+    }
+
+    @Benchmark
+    public String issue() throws Exception {
+        return this.iir.issueIdentity(UUID.randomUUID(), Dime.VALID_FOR_1_DAY, this.issuerKey, this.issuer, true, Fixtures.LEAF_CAPABILITIES, null, Fixtures.SYSTEM_NAME, null, null).exportToEncoded();
+    }
+
+}
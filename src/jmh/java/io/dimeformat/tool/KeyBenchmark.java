@@ -0,0 +1,46 @@
+//
+//  KeyBenchmark.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import io.dimeformat.Dime;
+import io.dimeformat.Key;
+import io.dimeformat.enums.KeyCapability;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyBenchmark {
+
+    @Param({"SIGN", "EXCHANGE", "ENCRYPT"})
+    public String capability;
+
+    @Param({"STN"})
+    public String suite;
+
+    private List<KeyCapability> capabilities;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        this.capabilities = List.of(KeyCapability.valueOf(this.capability));
+    }
+
+    @Benchmark
+    public String generateKey() throws Exception {
+        return Key.generateKey(this.capabilities, Dime.VALID_FOR_1_DAY, null, null, this.suite).exportToEncoded();
+    }
+
+}
@@ -0,0 +1,88 @@
+//
+//  ReadFileBenchmark.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Compares the FileChannel based file input against the previous FileReader/readLine reader. Run with the gc profiler
+// (enabled in build.gradle) to get allocated bytes per operation next to the timings.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReadFileBenchmark {
+
+    @Param({"1048576", "104857600", "1073741824"})
+    public long size;
+
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        this.file = File.createTempFile("dimetool-bench", ".dime");
+        byte[] alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".getBytes(StandardCharsets.US_ASCII);
+        byte[] line = new byte[ReadFileBenchmark.LINE_LENGTH + 1];
+        Random random = new Random(42);
+        try (OutputStream stream = new BufferedOutputStream(new FileOutputStream(this.file), 1 << 20)) {
+            for (long written = 0; written < this.size; written += line.length) {
+                for (int i = 0; i < ReadFileBenchmark.LINE_LENGTH; i++) {
+                    line[i] = alphabet[random.nextInt(alphabet.length)];
+                }
+                line[ReadFileBenchmark.LINE_LENGTH] = '\n';
+                stream.write(line, 0, (int) Math.min(line.length, this.size - written));
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(this.file.toPath());
+    }
+
+    @Benchmark
+    public String readFileReader() throws IOException {
+        BufferedReader br = new BufferedReader(new FileReader(this.file));
+        StringBuilder builder = new StringBuilder();
+        String str;
+        while ((str = br.readLine()) != null) {
+            builder.append(str);
+        }
+        br.close();
+        return builder.toString();
+    }
+
+    @Benchmark
+    public String readFileChannel() throws IOException {
+        return Utility.readFile(this.file);
+    }
+
+    @Benchmark
+    public byte[] readBytesChannel() throws IOException {
+        return Utility.readBytes(this.file);
+    }
+
+    @Benchmark
+    public byte[] readPayloadReader() throws IOException {
+        return readFileReader().getBytes(StandardCharsets.UTF_8);
+    }
+
+    ///// PRIVATE /////
+
+    private static final int LINE_LENGTH = 76;
+
+}
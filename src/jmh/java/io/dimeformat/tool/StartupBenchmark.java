@@ -0,0 +1,117 @@
+//
+//  StartupBenchmark.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+// Launches the tool as a separate process and measures the time until the first byte of output is received, which is
+// what a calling script waits for. Arguments: <shadow jar> <cds archive> <json result file> [<baseline jar>]
+public class StartupBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String jar = args[0];
+        String archive = args[1];
+        Path resultFile = Path.of(args[2]);
+        String baselineJar = args.length > 3 ? args[3] : "";
+
+        Map<String, List<String>> launchers = new LinkedHashMap<>();
+        if (baselineJar.length() > 0) {
+            launchers.put("baseline", List.of(StartupBenchmark.java(), "-jar", baselineJar));
+        }
+        launchers.put("default", List.of(StartupBenchmark.java(), "-jar", jar));
+        if (new File(archive).isFile()) {
+            launchers.put("cds", List.of(StartupBenchmark.java(), "-XX:SharedArchiveFile=" + archive, "-jar", jar));
+        }
+
+        Path work = Files.createTempDirectory("dimetool-startup");
+        List<String> tool = launchers.get("default");
+        Path key = write(work.resolve("key.dime"), execute(tool, "key", "--cap", "sign"));
+        Path data = write(work.resolve("data.dime"), execute(tool, "create", "--type", "data", "--payload", "startup"));
+        Path item = write(work.resolve("item.dime"), execute(tool, "sign", "--item", data.toString(), "--key", key.toString()));
+
+        Map<String, String[]> scenarios = new LinkedHashMap<>();
+        scenarios.put("version", new String[] { Option.VERSION });
+        scenarios.put("key", new String[] { "key", "--cap", "sign" });
+        scenarios.put("verify", new String[] { "verify", "--item", item.toString(), "--verifier", key.toString() });
+
+        StringBuilder json = new StringBuilder("[");
+        System.out.printf("%n%-10s %-10s %12s %12s %12s%n", "Scenario", "Launcher", "Median (ms)", "Mean (ms)", "Min (ms)");
+        for (Map.Entry<String, String[]> scenario: scenarios.entrySet()) {
+            for (Map.Entry<String, List<String>> launcher: launchers.entrySet()) {
+                for (int i = 0; i < StartupBenchmark.WARMUP_RUNS; i++) {
+                    timeToFirstOutput(launcher.getValue(), scenario.getValue());
+                }
+                long[] samples = new long[StartupBenchmark.MEASURED_RUNS];
+                for (int i = 0; i < samples.length; i++) {
+                    samples[i] = timeToFirstOutput(launcher.getValue(), scenario.getValue());
+                }
+                Arrays.sort(samples);
+                double median = samples[samples.length / 2] / 1e6;
+                double mean = Arrays.stream(samples).average().orElse(0) / 1e6;
+                double min = samples[0] / 1e6;
+                System.out.printf("%-10s %-10s %12.1f %12.1f %12.1f%n", scenario.getKey(), launcher.getKey(), median, mean, min);
+                if (json.length() > 1) { json.append(','); }
+                json.append(String.format(Locale.ROOT, "{\"scenario\":\"%s\",\"launcher\":\"%s\",\"runs\":%d,\"medianMs\":%.3f,\"meanMs\":%.3f,\"minMs\":%.3f}",
+                        scenario.getKey(), launcher.getKey(), samples.length, median, mean, min));
+            }
+        }
+        json.append(']');
+        Files.createDirectories(resultFile.toAbsolutePath().getParent());
+        Files.writeString(resultFile, json.toString());
+        System.out.println("\nResults written to " + resultFile);
+    }
+
+    ///// PRIVATE /////
+
+    private static final int WARMUP_RUNS = 2;
+    private static final int MEASURED_RUNS = 10;
+
+    private static String java() {
+        return Path.of(System.getProperty("java.home"), "bin", "java").toString();
+    }
+
+    private static List<String> command(List<String> launcher, String... args) {
+        List<String> command = new ArrayList<>(launcher);
+        Collections.addAll(command, args);
+        return command;
+    }
+
+    private static String execute(List<String> launcher, String... args) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command(launcher, args)).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).trim();
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException("Failed to execute: " + String.join(" ", args));
+        }
+        return output;
+    }
+
+    private static Path write(Path path, String content) throws IOException {
+        return Files.writeString(path, content);
+    }
+
+    private static long timeToFirstOutput(List<String> launcher, String[] args) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command(launcher, args)).redirectError(ProcessBuilder.Redirect.DISCARD).start();
+        try (InputStream output = process.getInputStream()) {
+            if (output.read() < 0) {
+                throw new IllegalStateException("No output from: " + String.join(" ", args));
+            }
+            long elapsed = System.nanoTime() - start;
+            output.transferTo(OutputStream.nullOutputStream());
+            process.waitFor();
+            return elapsed;
+        }
+    }
+
+}
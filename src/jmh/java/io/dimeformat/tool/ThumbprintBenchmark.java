@@ -0,0 +1,40 @@
+//
+//  ThumbprintBenchmark.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import io.dimeformat.Item;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ThumbprintBenchmark {
+
+    @Param({"key", "identity"})
+    public String type;
+
+    private String encoded;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        this.encoded = this.type.equals("key") ? Fixtures.signKey().exportToEncoded() : Fixtures.chain(1)[1].exportToEncoded();
+    }
+
+    @Benchmark
+    public String thumbprint() throws Exception {
+        return Item.importFromEncoded(this.encoded).generateThumbprint();
+    }
+
+}
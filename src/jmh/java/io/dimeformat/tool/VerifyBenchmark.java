@@ -0,0 +1,75 @@
+//
+//  VerifyBenchmark.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import io.dimeformat.Data;
+import io.dimeformat.Identity;
+import io.dimeformat.Item;
+import io.dimeformat.Key;
+import io.dimeformat.keyring.IntegrityState;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VerifyBenchmark {
+
+    // Verification against a key does not depend on the chain depth, so its state is kept apart and it is run once
+    @State(Scope.Benchmark)
+    public static class KeyState {
+
+        private Key key;
+        private Data data;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            this.key = Fixtures.signKey();
+            Data data = new Data(null);
+            data.setPayload("benchmark".getBytes(StandardCharsets.UTF_8), null);
+            data.sign(this.key);
+            this.data = Item.importFromEncoded(data.exportToEncoded());
+        }
+
+    }
+
+    @State(Scope.Benchmark)
+    public static class ChainState {
+
+        @Param({"1", "2", "3", "4", "5"})
+        public int depth;
+
+        private Identity root;
+        private Identity leaf;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            Identity[] chain = Fixtures.chain(this.depth);
+            this.root = Item.importFromEncoded(chain[0].exportToEncoded());
+            this.leaf = Item.importFromEncoded(chain[this.depth].exportToEncoded());
+        }
+
+    }
+
+    @Benchmark
+    public IntegrityState verifyWithKey(KeyState state) throws Exception {
+        return state.data.verify(state.key);
+    }
+
+    @Benchmark
+    public IntegrityState verifyWithIdentity(ChainState state) throws Exception {
+        return state.leaf.verify(state.root);
+    }
+
+}
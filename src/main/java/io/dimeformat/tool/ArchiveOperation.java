@@ -0,0 +1,150 @@
+//
+//  ArchiveOperation.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import io.dimeformat.Item;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class ArchiveOperation extends Operation {
+
+    public static final String PACK_NAME = "pack";
+    public static final String UNPACK_NAME = "unpack";
+
+    @Override
+    public String getDescription() {
+        switch (getName()) {
+            case ArchiveOperation.PACK_NAME: return "Packs Dime items into a single indexed archive file, appending to it if it exists.";
+            case ArchiveOperation.UNPACK_NAME: return "Unpacks Dime items from an archive file, or looks up a single item by thumbprint.";
+            default: return null;
+        }
+    }
+
+    @Override
+    public List<Option> getOptions() {
+        ArrayList<Option> array = new ArrayList<>();
+        switch (getName()) {
+            case ArchiveOperation.PACK_NAME:
+                Collections.addAll(array,
+                        new Option(Option.ARCHIVE, true, "Archive file to pack items into, created if it does not exist."),
+                        new Option(Option.BATCH, true, "Directory with one item per file, file with newline-delimited items, or another Dime archive, to pack, use '-' to read from stdin. Items already in the archive are skipped."),
+                        new Option(Option.ORDER, false, "Order of items in the archive, defaults to input order.", List.of(BatchProcessor.ORDER_INPUT + "\t\t(same order as the input)", BatchProcessor.ORDER_COMPLETION + "\t(in order of completion)")),
+                        new Option(Option.WORKERS, false, "Number of worker threads used to thumbprint items, defaults to number of processors."));
+                break;
+            case ArchiveOperation.UNPACK_NAME:
+                Collections.addAll(array,
+                        new Option(Option.ARCHIVE, true, "Archive file to unpack items from."),
+                        new Option(Option.LOOKUP, false, "Thumbprint of a single item to get from the archive."),
+                        new Option(Option.TYPE, false, "Only unpack items of this type, given as the item header, e.g. ID, KEY or DAT."),
+                        new Option(Option.OUT_DIR, false, "Directory to write one file per item to, instead of newline-delimited items to output."));
+                break;
+            default:
+                return null;
+        }
+        return array;
+    }
+
+    @Override
+    public String execute() throws Exception {
+        String archive = arguments.get(Option.ARCHIVE);
+        if (archive == null || archive.length() == 0) {
+            DimeTool.showErrorMessage(this, "Missing required option: " + Option.ARCHIVE + ".", true);
+            return null;
+        }
+        if (ArchiveOperation.PACK_NAME.equals(getName())) {
+            String source = arguments.get(Option.BATCH);
+            if (source == null || source.length() == 0) {
+                DimeTool.showErrorMessage(this, "Missing required option: " + Option.BATCH + ".", true);
+                return null;
+            }
+            executePack(Path.of(archive), source);
+            return null;
+        }
+        try (DimeArchive dimeArchive = DimeArchive.open(Path.of(archive))) {
+            if (arguments.hasOption(Option.LOOKUP)) {
+                String encoded = dimeArchive.get(arguments.get(Option.LOOKUP));
+                if (encoded == null) {
+                    DimeTool.showErrorMessage(this, "Item not found in archive: " + arguments.get(Option.LOOKUP), false);
+                }
+                return encoded;
+            }
+            executeUnpack(dimeArchive, arguments.get(Option.TYPE));
+        }
+        return null;
+    }
+
+    ///// PRIVATE /////
+
+    // Items are imported and thumbprinted in parallel and appended as one new segment, nothing is appended unless all
+    // input was read. The archive is locked while appending, so items are checked against what it holds under the lock
+    private void executePack(Path file, String source) throws Exception {
+        Set<String> existing = ConcurrentHashMap.newKeySet();
+        BatchProcessor<RecordReader.Record> processor = BatchProcessor.fromArguments(arguments);
+        try (RecordReader reader = RecordReader.open(source);
+             ArchiveSink output = new ArchiveSink(DimeArchive.append(file))) {
+            process(processor, reader, record -> {
+                Item item = Timings.time(Timings.IMPORT, () -> Item.importFromEncoded(record.value));
+                String thumbprint = Timings.time(Timings.CRYPTO, item::generateThumbprint);
+                if (!existing.add(thumbprint) || output.appender.get(thumbprint) != null) {
+                    return null;
+                }
+                return thumbprint + "\t" + item.getHeader() + "\t" + record.value;
+            }, output);
+            output.commit();
+        }
+        if (processor.getFailed() > 0) {
+            getErrorStream().println("[ERROR] Failed to pack " + processor.getFailed() + " of " + processor.getProcessed() + " items.");
+        }
+    }
+
+    private void executeUnpack(DimeArchive archive, String type) throws Exception {
+        Iterator<DimeArchive.Entry> entries = type != null && type.length() > 0 ? archive.findByType(type).iterator() : archive.entries();
+        try (OutputSink output = OutputSink.open(arguments, getOutputStream())) {
+            while (entries.hasNext()) {
+                DimeArchive.Entry entry = entries.next();
+                output.writeRecord(OutputSink.itemRecord(arguments, Timings.time(Timings.OUTPUT, () -> archive.readItem(entry)), entry.thumbprint));
+            }
+            output.commit();
+        }
+    }
+
+    // Receives lines of thumbprint, item type and encoded item, and appends them to an archive
+    private static final class ArchiveSink extends OutputSink {
+        private final DimeArchive.Appender appender;
+        ArchiveSink(DimeArchive.Appender appender) {
+            this.appender = appender;
+        }
+        @Override
+        public void writeRecord(String record) throws IOException {
+            String[] fields = record.split("\t", 3);
+            if (fields.length != 3) {
+                throw new IOException("Invalid archive record.");
+            }
+            this.appender.append(fields[0], fields[1], fields[2]);
+        }
+        @Override
+        public void commit() throws IOException {
+            super.commit();
+            this.appender.commit();
+        }
+        @Override
+        protected void finish() throws IOException {
+            this.appender.close();
+        }
+        @Override
+        protected void discard() throws IOException {
+            this.appender.close(); // Truncates the archive back to where it was
+        }
+    }
+
+}
@@ -13,15 +13,36 @@ import io.dimeformat.Dime;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
-import java.util.HashMap;
-import java.util.UUID;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
+// Arguments are parsed once and are immutable after construction. Option values are resolved (including reading any
+// referenced file) and converted to their typed form on first access and then memoized, so an instance may be shared
+// between worker threads.
 public class Arguments {
 
+    ///// PUBLIC /////
+
+    public static final String FILE_PREFIX = "@";
+    public static final String OPTION_PREFIX = "--";
+
     /// Constructors ///
     public Arguments(String[] args) {
-        parseArguments(args);
+        this.parent = null;
+        this.overriddenOption = null;
+        this.values = new ConcurrentHashMap<>();
+        String operationName = null;
+        Map<String, String> map = new HashMap<>();
+        if (args != null && args.length > 0) {
+            operationName = args[0];
+            parseArguments(args, map);
+        }
+        this.operationName = operationName;
+        this.map = Collections.unmodifiableMap(map);
     }
 
     /// Operation ///
@@ -29,35 +50,91 @@ public class Arguments {
 
     /// Option methods ///
     public int size() {
-        return this.map != null ? this.map.size() : 0;
+        return this.map.size();
     }
 
     public boolean hasOption(String option) {
-        return this.map != null && this.map.containsKey(option);
+        return this.map.containsKey(option);
+    }
+
+    // The option given as '-' whose values are read from stdin, only one option can be read from stdin
+    public String getStdinOption() {
+        List<String> options = new ArrayList<>();
+        for (Map.Entry<String, String> entry: this.map.entrySet()) {
+            if (entry.getValue().equals(RecordReader.STDIN) && !Option.isPath(entry.getKey())) {
+                options.add(entry.getKey());
+            }
+        }
+        if (options.size() > 1) {
+            Collections.sort(options);
+            throw new IllegalArgumentException("Only one option may be given as '" + RecordReader.STDIN + "', found: " + String.join(", ", options) + ".");
+        }
+        return options.isEmpty() ? null : options.get(0);
+    }
+
+    // Returns arguments where one option has a different value, all other options share already resolved values
+    public Arguments withValue(String option, String value) {
+        return new Arguments(this, option, value);
     }
 
     public String get(String option) {
-        return getValue(option);
+        return (String) memoized(option, Arguments.KIND_STRING, opt -> timed(opt, this::resolveString));
+    }
+
+    public byte[] getBytes(String option) throws IOException {
+        try {
+            return (byte[]) memoized(option, Arguments.KIND_BYTES, opt -> timed(opt, this::resolveBytes));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Returns the file an option refers to without reading it, or null if the value is given directly
+    public File getFile(String option) {
+        String value = this.map.get(option);
+        return value != null && value.length() > 0 && !Option.isPath(option) ? fileReference(option, value) : null;
     }
 
     public String[] getArray(String option) {
-        String strings = get(option);
-        return strings != null ? strings.split(" ") : null;
+        String[] array = (String[]) memoized(option, Arguments.KIND_ARRAY, opt -> {
+            String strings = get(opt);
+            return strings != null ? strings.trim().split(" +") : null;
+        });
+        return array != null ? array.clone() : null;
     }
 
     public Instant getInstant(String option) {
-        String time = getValue(option);
-        return time != null && time.length() > 0 ? Instant.parse(time) : null;
+        return (Instant) memoized(option, Arguments.KIND_INSTANT, opt -> {
+            String time = get(opt);
+            try {
+                return time != null && time.trim().length() > 0 ? Instant.parse(time.trim()) : null;
+            } catch (DateTimeParseException e) {
+                throw invalidValue(opt, time);
+            }
+        });
     }
 
     public UUID getUUID(String option) {
-        String uuid = get(option);
-        return uuid != null && uuid.length() > 0 ? UUID.fromString(uuid) : null;
+        return (UUID) memoized(option, Arguments.KIND_UUID, opt -> {
+            String uuid = get(opt);
+            try {
+                return uuid != null && uuid.trim().length() > 0 ? UUID.fromString(uuid.trim()) : null;
+            } catch (IllegalArgumentException e) {
+                throw invalidValue(opt, uuid);
+            }
+        });
     }
 
     public long getLong(String option, long defaultValue) {
-        String number = getValue(option);
-        return number != null && number.length() > 0 ? Long.parseLong(number) : defaultValue;
+        Long number = (Long) memoized(option, Arguments.KIND_LONG, opt -> {
+            String text = get(opt);
+            try {
+                return text != null && text.trim().length() > 0 ? Long.parseLong(text.trim()) : null;
+            } catch (NumberFormatException e) {
+                throw invalidValue(opt, text);
+            }
+        });
+        return number != null ? number : defaultValue;
     }
 
     public long getValidFor(String option, long baseSeconds) {
@@ -70,51 +147,131 @@ public class Arguments {
 
     ///// PRIVATE /////
 
-    private static final String OPTION_PREFIX = "--";
-    private String operationName;
-    private HashMap<String, String> map;
+    private static final char KIND_STRING = 's';
+    private static final char KIND_BYTES = 'b';
+    private static final char KIND_ARRAY = 'a';
+    private static final char KIND_INSTANT = 'i';
+    private static final char KIND_UUID = 'u';
+    private static final char KIND_LONG = 'l';
+    private static final Object NONE = new Object();
 
+    private interface Resolver {
+        Object resolve(String option) throws IOException;
+    }
 
-    private String getValue(String option) {
-        String value = this.map.get(option);
-        if (!option.equals(Option.OUT)) {
-            if (value != null && value.length() > 0) {
-                File file = new File(value);
-                if (file.exists() && !file.isDirectory()) {
-                    try {
-                        value = Utility.readFile(file);
-                    } catch (IOException e) {
-                        /* ignore and just return what is in value */
-                    }
+    private final String operationName;
+    private final Map<String, String> map;
+    private final Map<String, Memo> values;
+    private final Arguments parent;
+    private final String overriddenOption;
+
+    private Arguments(Arguments parent, String option, String value) {
+        Map<String, String> map = new HashMap<>(parent.map);
+        map.put(option, value);
+        this.operationName = parent.operationName;
+        this.map = Collections.unmodifiableMap(map);
+        this.values = new ConcurrentHashMap<>();
+        this.parent = parent;
+        this.overriddenOption = option;
+    }
+
+    private static final class Memo {
+        private Object value;
+        synchronized Object get(String option, Resolver resolver) {
+            if (this.value == null) {
+                try {
+                    Object resolved = resolver.resolve(option);
+                    this.value = resolved != null ? resolved : Arguments.NONE;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
             }
+            return this.value;
+        }
+    }
+
+    private Object memoized(String option, char kind, Resolver resolver) {
+        if (this.parent != null && !option.equals(this.overriddenOption)) {
+            return this.parent.memoized(option, kind, resolver);
+        }
+        Object value = this.values.computeIfAbsent(kind + option, key -> new Memo()).get(option, resolver);
+        return value != Arguments.NONE ? value : null;
+    }
+
+    private static Object timed(String option, Resolver resolver) throws IOException {
+        try {
+            return Timings.time(Timings.ARGUMENTS, () -> resolver.resolve(option));
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String resolveString(String option) throws IOException {
+        String value = this.map.get(option);
+        if (value == null || value.length() == 0 || Option.isPath(option)) {
+            return value;
+        }
+        File file = fileReference(option, value);
+        if (file != null) {
+            try {
+                return Utility.readFile(file);
+            } catch (IOException e) {
+                if (value.startsWith(Arguments.FILE_PREFIX)) { throw e; }
+                /* ignore and just return what is in value */
+            }
         }
         return value;
     }
 
-    private void parseArguments(String[] args) {
-        if (args == null || args.length == 0) { return; }
-        this.operationName = args[0];
-        this.map = new HashMap<>();
-        if (args.length > 1) {
-            for (int index = 1; index < args.length; ) {
+    private byte[] resolveBytes(String option) throws IOException {
+        String value = this.map.get(option);
+        if (value == null || value.length() == 0) {
+            return null;
+        }
+        File file = fileReference(option, value);
+        if (file != null) {
+            return Utility.readBytes(file);
+        }
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
 
-                String option = args[index];
-                if (!option.startsWith(Arguments.OPTION_PREFIX)) {
-                    throw new IllegalArgumentException("Invalid option encountered: " + option);
-                }
-                int valueIndex = index + 1;
-                StringBuilder values = new StringBuilder();
-                while (valueIndex < args.length && !args[valueIndex].startsWith(Arguments.OPTION_PREFIX)) {
-                    if (values.length() != 0) {
-                        values.append(" ");
-                    }
-                    values.append(args[valueIndex]);
-                    valueIndex++;
+    // An explicit '@filename' must refer to an existing file, a plain value is only treated as a filename if such a file
+    // exists (checked once, as the result is memoized)
+    private static File fileReference(String option, String value) {
+        if (value.startsWith(Arguments.FILE_PREFIX)) {
+            File file = new File(value.substring(Arguments.FILE_PREFIX.length()));
+            if (!file.isFile()) {
+                throw new IllegalArgumentException("File not found for option " + option + ": " + file.getPath());
+            }
+            return file;
+        }
+        File file = new File(value);
+        return file.isFile() ? file : null;
+    }
+
+    private static IllegalArgumentException invalidValue(String option, String value) {
+        return new IllegalArgumentException("Invalid value for option " + option + ": " + value);
+    }
+
+    private static void parseArguments(String[] args, Map<String, String> map) {
+        for (int index = 1; index < args.length; ) {
+            String option = args[index];
+            if (!option.startsWith(Arguments.OPTION_PREFIX)) {
+                throw new IllegalArgumentException("Invalid option encountered: " + option);
+            }
+            int valueIndex = index + 1;
+            StringBuilder values = new StringBuilder();
+            while (valueIndex < args.length && !args[valueIndex].startsWith(Arguments.OPTION_PREFIX)) {
+                if (values.length() != 0) {
+                    values.append(" ");
                 }
-                map.put(option, values.toString());
-                index = valueIndex;
+                values.append(args[valueIndex]);
+                valueIndex++;
             }
+            map.put(option, values.toString());
+            index = valueIndex;
         }
     }
 
@@ -0,0 +1,174 @@
+//
+//  BatchProcessor.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class BatchProcessor<T> {
+
+    ///// PUBLIC /////
+
+    public static final String ORDER_INPUT = "input";
+    public static final String ORDER_COMPLETION = "completion";
+    public static final String ERROR = "ERROR";
+
+    public interface Task<T> {
+        String process(T record) throws Exception;
+    }
+
+    /// Constructors ///
+
+    public BatchProcessor(int workers, boolean ordered) {
+        this.workers = Math.max(1, workers);
+        this.ordered = ordered;
+    }
+
+    public static <T> BatchProcessor<T> fromArguments(Arguments arguments) {
+        return BatchProcessor.fromArguments(arguments, true);
+    }
+
+    public static <T> BatchProcessor<T> fromArguments(Arguments arguments, boolean orderedByDefault) {
+        int workers = (int) arguments.getLong(Option.WORKERS, Runtime.getRuntime().availableProcessors());
+        String order = arguments.get(Option.ORDER);
+        if (order != null && order.length() > 0 && !order.equals(ORDER_INPUT) && !order.equals(ORDER_COMPLETION)) {
+            throw new IllegalArgumentException("Invalid value for " + Option.ORDER + ": " + order);
+        }
+        if (order == null || order.length() == 0) {
+            return new BatchProcessor<>(workers, orderedByDefault);
+        }
+        return new BatchProcessor<>(workers, order.equals(ORDER_INPUT));
+    }
+
+    /// Statistics ///
+
+    public long getProcessed() { return this.processed; }
+
+    public long getFailed() { return this.failed; }
+
+    // A failed record also gets a result line, name<TAB>ERROR<TAB>message, so that there is one result line for every
+    // record. Only for operations with result lines, not for operations that output items
+    public void setErrorLines(boolean errorLines) { this.errorLines = errorLines; }
+
+    /// Process ///
+
+    public void process(Iterator<T> records, Task<T> task, Writer output, PrintStream errors) throws IOException, InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(this.workers, BatchProcessor::newThread);
+        int capacity = this.workers * BatchProcessor.WINDOW_FACTOR;
+        try {
+            if (this.ordered) {
+                ArrayDeque<Future<Outcome<T>>> window = new ArrayDeque<>(capacity);
+                while (records.hasNext()) {
+                    T record = records.next();
+                    window.add(executor.submit(() -> run(record, task)));
+                    if (window.size() >= capacity) {
+                        write(await(window.poll()), output, errors);
+                    }
+                }
+                while (!window.isEmpty()) {
+                    write(await(window.poll()), output, errors);
+                }
+            } else {
+                CompletionService<Outcome<T>> completion = new ExecutorCompletionService<>(executor);
+                int pending = 0;
+                while (records.hasNext()) {
+                    T record = records.next();
+                    completion.submit(() -> run(record, task));
+                    if (++pending >= capacity) {
+                        write(await(completion.take()), output, errors);
+                        pending--;
+                    }
+                }
+                for (; pending > 0; pending--) {
+                    write(await(completion.take()), output, errors);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            output.flush();
+        }
+    }
+
+    ///// PRIVATE /////
+
+    private static final int WINDOW_FACTOR = 4;
+    private static final int FLUSH_INTERVAL = 1024;
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    private final int workers;
+    private final boolean ordered;
+    private long processed;
+    private long failed;
+    private boolean errorLines;
+
+    private static final class Outcome<T> {
+        final T record;
+        final String line;
+        final Exception exception;
+        Outcome(T record, String line, Exception exception) {
+            this.record = record;
+            this.line = line;
+            this.exception = exception;
+        }
+    }
+
+    private static Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "dimetool-worker-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static <T> Outcome<T> run(T record, Task<T> task) {
+        try {
+            if (record instanceof RecordReader.Record && ((RecordReader.Record) record).error != null) {
+                throw ((RecordReader.Record) record).error; // Could not be read
+            }
+            return new Outcome<>(record, task.process(record), null);
+        } catch (Exception e) {
+            return new Outcome<>(record, null, e);
+        }
+    }
+
+    private static String singleLine(String message) {
+        return message != null ? message.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ') : "";
+    }
+
+    private static <T> Outcome<T> await(Future<Outcome<T>> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void write(Outcome<T> outcome, Writer output, PrintStream errors) throws IOException {
+        this.processed++;
+        if (outcome.exception != null) {
+            this.failed++;
+            errors.println("[ERROR] " + outcome.record + ": " + outcome.exception.getMessage());
+            if (this.errorLines) {
+                output.write(outcome.record + "\t" + BatchProcessor.ERROR + "\t" + BatchProcessor.singleLine(outcome.exception.getMessage()));
+                output.write('\n');
+            }
+        } else if (outcome.line != null) {
+            output.write(outcome.line);
+            output.write('\n');
+        }
+        if (this.processed % BatchProcessor.FLUSH_INTERVAL == 0) {
+            output.flush();
+        }
+    }
+
+}
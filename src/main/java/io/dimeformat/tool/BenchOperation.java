@@ -0,0 +1,350 @@
+//
+//  BenchOperation.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import io.dimeformat.*;
+import io.dimeformat.enums.IdentityCapability;
+import io.dimeformat.enums.KeyCapability;
+import io.dimeformat.keyring.IntegrityState;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+public class BenchOperation extends Operation {
+
+    public static final String NAME = "bench";
+
+    public static final String OP_KEY = "key";
+    public static final String OP_IIR = "iir";
+    public static final String OP_ISSUE = "issue";
+    public static final String OP_VERIFY = "verify";
+    public static final String OP_SIGN = "sign";
+    public static final String OP_THUMBPRINT = "thumbprint";
+    public static final List<String> ALL_OPS = List.of(BenchOperation.OP_KEY, BenchOperation.OP_IIR, BenchOperation.OP_ISSUE, BenchOperation.OP_VERIFY, BenchOperation.OP_SIGN, BenchOperation.OP_THUMBPRINT);
+    public static final long DEFAULT_DURATION = 10L;
+    public static final long DEFAULT_DEPTH = 2L;
+    public static final long DEFAULT_WARMUP = 2L;
+
+    @Override
+    public String getDescription() {
+        return "Runs a synthetic workload in-process and reports throughput and latency percentiles per operation.";
+    }
+
+    @Override
+    public List<Option> getOptions() {
+        ArrayList<Option> array = new ArrayList<>();
+        Collections.addAll(array,
+                new Option(Option.OPS, false, "Operations to include in the workload, run in turn by every worker, defaults to all.", List.of(BenchOperation.OP_KEY + "\t\t(key generation)", BenchOperation.OP_IIR + "\t\t(IIR generation)", BenchOperation.OP_ISSUE + "\t\t(identity issuing from an IIR, with trust chain)", BenchOperation.OP_VERIFY + "\t\t(import and verify of an identity against its root)", BenchOperation.OP_SIGN + "\t\t(signing of a data item)", BenchOperation.OP_THUMBPRINT + "\t(import and thumbprint of an identity)")),
+                new Option(Option.CRYPTO_SUITE, false, "Names of the cryptographic suites to run the workload for, omit to use default suite."),
+                new Option(Option.DEPTH, false, "Number of issuing steps from the root identity to the identities used, defaults to " + BenchOperation.DEFAULT_DEPTH + "."),
+                new Option(Option.DURATION, false, "Number of seconds to run the workload, defaults to " + BenchOperation.DEFAULT_DURATION + "."),
+                new Option(Option.WARMUP, false, "Number of seconds to run the workload before measuring, so that results are taken from compiled code, defaults to " + BenchOperation.DEFAULT_WARMUP + "."),
+                new Option(Option.RATE, false, "Target number of operations per second over all workers, omit to run at maximum throughput. Latency is measured from when an operation was scheduled to start."),
+                new Option(Option.WORKERS, false, "Number of worker threads, defaults to number of processors."),
+                new Option(Option.JSON, false, "File to write the report to as JSON, in addition to the table written to output."));
+        return array;
+    }
+
+    @Override
+    public String execute() throws Exception {
+        List<String> ops = arguments.hasOption(Option.OPS) ? List.of(arguments.getArray(Option.OPS)) : BenchOperation.ALL_OPS;
+        for (String op: ops) {
+            if (!BenchOperation.ALL_OPS.contains(op)) {
+                DimeTool.showErrorMessage(this, "Invalid value for option " + Option.OPS + ": " + op, true);
+                return null;
+            }
+        }
+        List<String> suites = arguments.hasOption(Option.CRYPTO_SUITE) ? List.of(arguments.getArray(Option.CRYPTO_SUITE)) : List.of(Dime.crypto.getDefaultSuiteName());
+        int depth = (int) Math.max(1L, arguments.getLong(Option.DEPTH, BenchOperation.DEFAULT_DEPTH));
+        long durationNanos = Math.max(1L, arguments.getLong(Option.DURATION, BenchOperation.DEFAULT_DURATION)) * 1_000_000_000L;
+        long warmupNanos = Math.max(0L, arguments.getLong(Option.WARMUP, BenchOperation.DEFAULT_WARMUP)) * 1_000_000_000L;
+        long rate = arguments.getLong(Option.RATE, 0L);
+        int workers = (int) Math.max(1L, arguments.getLong(Option.WORKERS, Runtime.getRuntime().availableProcessors()));
+        List<Task> tasks = new ArrayList<>();
+        for (String suite: suites) {
+            Fixture fixture = new Fixture(suite, depth);
+            for (String op: ops) {
+                Task task = new Task(op, suite, fixture.operation(op));
+                for (int i = 0; i < BenchOperation.WARM_UP_ITERATIONS; i++) {
+                    task.work.run();
+                }
+                tasks.add(task);
+            }
+        }
+        Worker[] running = new Worker[workers];
+        CountDownLatch done = new CountDownLatch(workers);
+        long warmup = System.nanoTime() + BenchOperation.START_DELAY_NANOS;
+        long start = warmup + warmupNanos;
+        long end = start + durationNanos;
+        long interval = rate > 0 ? Math.max(1L, 1_000_000_000L / rate) : 0L;
+        Phase[] phases = new Phase[] { new Phase(warmup, start), new Phase(start, end) };
+        for (int i = 0; i < workers; i++) {
+            running[i] = new Worker(tasks, i, phases, interval, done);
+            Thread thread = new Thread(running[i], "dimetool-bench-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        done.await();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        List<Result> results = new ArrayList<>();
+        for (int t = 0; t < tasks.size(); t++) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            long errors = 0;
+            for (Worker worker: running) {
+                histogram.add(worker.histograms[t]);
+                errors += worker.errors[t];
+            }
+            results.add(new Result(tasks.get(t), histogram, errors, seconds));
+        }
+        try (OutputSink output = OutputSink.open(arguments, getOutputStream(), false)) {
+            for (String line: BenchOperation.table(results)) {
+                output.writeRecord(line);
+            }
+            output.commit();
+        }
+        String json = arguments.get(Option.JSON);
+        if (json != null && json.length() > 0) {
+            BenchOperation.writeJson(Path.of(json), OutputSink.fsync(arguments), results, workers, rate, seconds, warmupNanos / 1_000_000_000L, depth);
+        }
+        return null;
+    }
+
+    ///// PRIVATE /////
+
+    private static final int WARM_UP_ITERATIONS = 20;
+    private static final long START_DELAY_NANOS = 10_000_000L;
+    private static final IdentityCapability[] ISSUER_CAPABILITIES = new IdentityCapability[] { IdentityCapability.GENERIC, IdentityCapability.ISSUE };
+    private static final IdentityCapability[] LEAF_CAPABILITIES = new IdentityCapability[] { IdentityCapability.GENERIC };
+    private static final String SYSTEM_NAME = "dimetool-bench";
+
+    private interface Work {
+        void run() throws Exception;
+    }
+
+    private static final class Task {
+        final String op;
+        final String suite;
+        final Work work;
+        Task(String op, String suite, Work work) {
+            this.op = op;
+            this.suite = suite;
+            this.work = work;
+        }
+    }
+
+    // Keys and a trust chain of the requested depth, created once per suite before the workload starts
+    private static final class Fixture {
+
+        final String suite;
+        final Key issuerKey;
+        final Identity root;
+        final Identity issuer;
+        final Key leafKey;
+        final String leafIdentity;
+        final IdentityIssuingRequest iir;
+
+        Fixture(String suite, int depth) throws Exception {
+            this.suite = suite;
+            Key key = signKey();
+            Identity identity = IdentityIssuingRequest.generateIIR(key, BenchOperation.ISSUER_CAPABILITIES)
+                    .selfIssueIdentity(UUID.randomUUID(), Dime.VALID_FOR_1_YEAR, key, BenchOperation.SYSTEM_NAME, null, null);
+            this.root = identity;
+            for (int i = 1; i < depth; i++) {
+                Key next = signKey();
+                identity = issue(next, BenchOperation.ISSUER_CAPABILITIES, key, identity);
+                key = next;
+            }
+            this.issuerKey = key;
+            this.issuer = identity;
+            this.leafKey = signKey();
+            this.iir = IdentityIssuingRequest.generateIIR(this.leafKey, BenchOperation.LEAF_CAPABILITIES);
+            this.leafIdentity = issue(this.leafKey, BenchOperation.LEAF_CAPABILITIES, this.issuerKey, this.issuer).exportToEncoded();
+        }
+
+        Work operation(String op) {
+            switch (op) {
+                case BenchOperation.OP_KEY: return this::signKey;
+                case BenchOperation.OP_IIR: return () -> IdentityIssuingRequest.generateIIR(this.leafKey, BenchOperation.LEAF_CAPABILITIES);
+                case BenchOperation.OP_ISSUE: return () -> this.iir.issueIdentity(UUID.randomUUID(), Dime.VALID_FOR_1_YEAR, this.issuerKey, this.issuer, true, BenchOperation.LEAF_CAPABILITIES, null, BenchOperation.SYSTEM_NAME, null, null);
+                case BenchOperation.OP_VERIFY: return () -> {
+                    Identity identity = Item.importFromEncoded(this.leafIdentity);
+                    IntegrityState state = identity.verify(this.root);
+                    if (!state.isValid()) {
+                        throw new IllegalStateException("Verification failed: " + state);
+                    }
+                };
+                case BenchOperation.OP_SIGN: return () -> {
+                    Data data = new Data(null);
+                    data.setPayload(BenchOperation.SYSTEM_NAME.getBytes(StandardCharsets.UTF_8), null);
+                    data.sign(this.leafKey);
+                    data.exportToEncoded();
+                };
+                case BenchOperation.OP_THUMBPRINT: return () -> Item.importFromEncoded(this.leafIdentity).generateThumbprint();
+                default: throw new IllegalArgumentException("Unknown operation: " + op);
+            }
+        }
+
+        private Key signKey() throws Exception {
+            return Key.generateKey(List.of(KeyCapability.SIGN), Dime.VALID_FOR_1_YEAR, null, null, this.suite);
+        }
+
+        private Identity issue(Key subjectKey, IdentityCapability[] capabilities, Key issuerKey, Identity issuer) throws Exception {
+            return IdentityIssuingRequest.generateIIR(subjectKey, capabilities)
+                    .issueIdentity(UUID.randomUUID(), Dime.VALID_FOR_1_YEAR, issuerKey, issuer, true, capabilities, null, BenchOperation.SYSTEM_NAME, null, null);
+        }
+
+    }
+
+    // Time span of the workload, with the shared schedule of its operations when running at a target rate
+    private static final class Phase {
+        final long start;
+        final long end;
+        final AtomicLong tickets = new AtomicLong();
+        Phase(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    // Runs the tasks in turn through every phase. With a target rate, every operation takes the next slot of the
+    // schedule of its phase and its latency is measured from that slot, so time spent waiting behind slow operations is
+    // included. Latencies and errors are reset at the start of every phase, so only the last phase is reported
+    private static final class Worker implements Runnable {
+
+        final LatencyHistogram[] histograms;
+        final long[] errors;
+        private final List<Task> tasks;
+        private final int offset;
+        private final Phase[] phases;
+        private final long interval;
+        private final CountDownLatch done;
+
+        Worker(List<Task> tasks, int offset, Phase[] phases, long interval, CountDownLatch done) {
+            this.tasks = tasks;
+            this.offset = offset;
+            this.phases = phases;
+            this.interval = interval;
+            this.done = done;
+            this.histograms = new LatencyHistogram[tasks.size()];
+            this.errors = new long[tasks.size()];
+        }
+
+        @Override
+        public void run() {
+            try {
+                long iteration = this.offset;
+                for (Phase phase: this.phases) {
+                    for (int i = 0; i < this.histograms.length; i++) {
+                        this.histograms[i] = new LatencyHistogram();
+                        this.errors[i] = 0;
+                    }
+                    iteration = run(phase, iteration);
+                }
+            } finally {
+                this.done.countDown();
+            }
+        }
+
+        private long run(Phase phase, long iteration) {
+            BenchOperation.waitUntil(phase.start);
+            for (; ; iteration++) {
+                long scheduled;
+                if (this.interval > 0) {
+                    scheduled = phase.start + phase.tickets.getAndIncrement() * this.interval;
+                    if (scheduled >= phase.end) { break; }
+                    BenchOperation.waitUntil(scheduled);
+                } else {
+                    scheduled = System.nanoTime();
+                    if (scheduled >= phase.end) { break; }
+                }
+                int index = (int) (iteration % this.tasks.size());
+                try {
+                    this.tasks.get(index).work.run();
+                    this.histograms[index].record(System.nanoTime() - scheduled);
+                } catch (Exception e) {
+                    this.errors[index]++;
+                }
+            }
+            return iteration;
+        }
+
+    }
+
+    private static void waitUntil(long deadline) {
+        for (long remaining = deadline - System.nanoTime(); remaining > 0; remaining = deadline - System.nanoTime()) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private static final class Result {
+        final Task task;
+        final LatencyHistogram histogram;
+        final long errors;
+        final double throughput;
+        Result(Task task, LatencyHistogram histogram, long errors, double seconds) {
+            this.task = task;
+            this.histogram = histogram;
+            this.errors = errors;
+            this.throughput = histogram.getCount() / seconds;
+        }
+    }
+
+    private static String micros(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1000.0);
+    }
+
+    private static List<String> table(List<Result> results) {
+        List<String> lines = new ArrayList<>();
+        String format = "%-12s %-8s %10s %8s %12s %12s %12s %12s %12s";
+        lines.add(String.format(Locale.ROOT, format, "operation", "suite", "count", "errors", "ops/s", "p50 (us)", "p99 (us)", "p999 (us)", "max (us)"));
+        for (Result result: results) {
+            LatencyHistogram histogram = result.histogram;
+            lines.add(String.format(Locale.ROOT, format, result.task.op, result.task.suite, histogram.getCount(), result.errors,
+                    String.format(Locale.ROOT, "%.1f", result.throughput), BenchOperation.micros(histogram.getPercentile(50.0)),
+                    BenchOperation.micros(histogram.getPercentile(99.0)), BenchOperation.micros(histogram.getPercentile(99.9)),
+                    BenchOperation.micros(histogram.getMax())));
+        }
+        return lines;
+    }
+
+    private static void writeJson(Path file, String fsync, List<Result> results, int workers, long rate, double seconds, long warmup, int depth) throws Exception {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"workers\":").append(workers)
+                .append(",\"rate\":").append(rate)
+                .append(",\"depth\":").append(depth)
+                .append(",\"warmup\":").append(warmup)
+                .append(",\"seconds\":").append(String.format(Locale.ROOT, "%.3f", seconds))
+                .append(",\"operations\":[");
+        boolean first = true;
+        for (Result result: results) {
+            if (!first) { json.append(','); }
+            first = false;
+            LatencyHistogram histogram = result.histogram;
+            json.append("{\"operation\":\"").append(result.task.op)
+                    .append("\",\"suite\":\"").append(result.task.suite)
+                    .append("\",\"count\":").append(histogram.getCount())
+                    .append(",\"errors\":").append(result.errors)
+                    .append(",\"throughput\":").append(String.format(Locale.ROOT, "%.3f", result.throughput))
+                    .append(",\"latencyNanos\":{\"mean\":").append(Math.round(histogram.getMean()))
+                    .append(",\"p50\":").append(histogram.getPercentile(50.0))
+                    .append(",\"p99\":").append(histogram.getPercentile(99.0))
+                    .append(",\"p999\":").append(histogram.getPercentile(99.9))
+                    .append(",\"max\":").append(histogram.getMax())
+                    .append("}}");
+        }
+        json.append("]}\n");
+        OutputSink.writeFile(file.toAbsolutePath(), fsync, json.toString());
+    }
+
+}
@@ -0,0 +1,169 @@
+//
+//  ConvertOperation.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import io.dimeformat.Identity;
+import io.dimeformat.Item;
+import io.dimeformat.Key;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ConvertOperation extends Operation {
+
+    public static final String NAME = "convert";
+
+    public static final String FORMAT_LEGACY = "legacy";
+    public static final String FORMAT_CURRENT = "current";
+
+    @Override
+    public String getDescription() {
+        return "Converts Dime items to the legacy format, items already in the target format are passed through.";
+    }
+
+    @Override
+    public List<Option> getOptions() {
+        ArrayList<Option> array = new ArrayList<>();
+        Collections.addAll(array,
+                new Option(Option.BATCH, true, "Directory with one item per file, file with newline-delimited items, or Dime archive, to convert, use '-' to read from stdin."),
+                new Option(Option.TO, true, "Format to convert items to, conversion to the " + ConvertOperation.FORMAT_CURRENT + " format is not supported by dime-java-ref " + DimeTool.DIME_VERSION + ".", List.of(ConvertOperation.FORMAT_LEGACY + "\t\t(legacy format, as with " + Option.LEGACY + ")")),
+                new Option(Option.KEY, false, "Dime encoded key to re-sign items with that were signed before conversion, must be the key that signed them. Items with signatures from more than one key are not converted, as the legacy format holds one signature."),
+                new Option(Option.ISSUER, false, "Dime encoded issuer identity to re-sign identities with that are not self-issued, used together with " + Option.KEY + ", must be the issuer of the identities."),
+                new Option(Option.IN_PLACE, false, "Replaces every converted file in the " + Option.BATCH + " directory, instead of writing the items to output."),
+                new Option(Option.ORDER, false, "Order of converted items, defaults to input order.", List.of(BatchProcessor.ORDER_INPUT + "\t\t(same order as the input)", BatchProcessor.ORDER_COMPLETION + "\t(in order of completion)")),
+                new Option(Option.WORKERS, false, "Number of worker threads to use, defaults to number of processors."));
+        return array;
+    }
+
+    @Override
+    public String execute() throws Exception {
+        String source = arguments.get(Option.BATCH);
+        if (source == null || source.length() == 0) {
+            DimeTool.showErrorMessage(this, "Missing required option: " + Option.BATCH + ".", true);
+            return null;
+        }
+        String format = arguments.get(Option.TO);
+        if (format == null || format.length() == 0) {
+            DimeTool.showErrorMessage(this, "Missing required option: " + Option.TO + ".", true);
+            return null;
+        } else if (format.equals(ConvertOperation.FORMAT_CURRENT)) {
+            DimeTool.showErrorMessage(this, "Conversion to the " + ConvertOperation.FORMAT_CURRENT + " format is not supported by dime-java-ref " + DimeTool.DIME_VERSION + ".", false);
+            return null;
+        } else if (!format.equals(ConvertOperation.FORMAT_LEGACY)) {
+            DimeTool.showErrorMessage(this, "Invalid value for option " + Option.TO + ": " + format, true);
+            return null;
+        }
+        boolean inPlace = arguments.hasOption(Option.IN_PLACE);
+        String fsync = OutputSink.fsync(arguments);
+        if (inPlace && !Files.isDirectory(Path.of(source))) {
+            DimeTool.showErrorMessage(this, "Option " + Option.IN_PLACE + " requires " + Option.BATCH + " to be a directory.", true);
+            return null;
+        }
+        String encodedKey = arguments.get(Option.KEY);
+        Key key = encodedKey != null && encodedKey.length() > 0 ? Timings.time(Timings.IMPORT, () -> Item.importFromEncoded(encodedKey)) : null;
+        String encodedIssuer = arguments.get(Option.ISSUER);
+        Identity issuer = encodedIssuer != null && encodedIssuer.length() > 0 ? Timings.time(Timings.IMPORT, () -> Item.importFromEncoded(encodedIssuer)) : null;
+        if (issuer != null && key == null) {
+            DimeTool.showErrorMessage(this, "Option " + Option.ISSUER + " requires " + Option.KEY + ".", true);
+            return null;
+        }
+        LongAdder converted = new LongAdder();
+        BatchProcessor<RecordReader.Record> processor = BatchProcessor.fromArguments(arguments);
+        long start = System.nanoTime();
+        try (RecordReader reader = RecordReader.open(source);
+             OutputSink output = OutputSink.open(arguments, getOutputStream())) {
+            process(processor, reader, record -> {
+                String result = convertToLegacy(record.value, key, issuer);
+                if (result != null) {
+                    converted.increment();
+                }
+                if (!inPlace) {
+                    return OutputSink.itemRecord(arguments, result != null ? result : record.value);
+                }
+                if (result != null) {
+                    Timings.run(Timings.OUTPUT, () -> OutputSink.writeFile(Path.of(source).resolve(record.name), fsync, result));
+                }
+                return record.name + "\t" + (result != null ? "converted" : "unchanged");
+            }, output);
+            output.commit();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long processed = processor.getProcessed();
+        long failed = processor.getFailed();
+        String summary = String.format(Locale.ROOT, "Converted %d, unchanged %d, failed %d of %d items in %.1f s (%.1f items/s).",
+                converted.sum(), processed - failed - converted.sum(), failed, processed, seconds, seconds > 0 ? processed / seconds : 0.0);
+        getErrorStream().println(failed > 0 ? "[ERROR] " + summary : summary);
+        return null;
+    }
+
+    ///// PRIVATE /////
+
+    // Returns null if the item is already in the legacy format. Signatures do not survive the conversion, so an item
+    // that was signed is signed again with the given key (and issuer, for identities). The item is only converted if
+    // its one signature was created by that key, so that no signature is replaced by another signer's, or dropped
+    private static String convertToLegacy(String encodedItem, Key key, Identity issuer) throws Exception {
+        Item item = Timings.time(Timings.IMPORT, () -> Item.importFromEncoded(encodedItem));
+        if (item.isLegacy()) {
+            return null;
+        }
+        boolean signed = item.isSigned();
+        if (signed) {
+            if (key == null) {
+                throw new IllegalArgumentException("Item is signed, " + Option.KEY + " is required to sign it again after conversion.");
+            }
+            if (item instanceof Identity && !((Identity) item).isSelfIssued()) {
+                if (issuer == null) {
+                    throw new IllegalArgumentException("Identity is not self-issued, " + Option.ISSUER + " is required to sign it again after conversion.");
+                } else if (!Objects.equals(issuer.getSubjectId(), item.getIssuerId())) {
+                    throw new IllegalArgumentException("Identity was issued by " + item.getIssuerId() + ", not by the identity given with " + Option.ISSUER + ".");
+                }
+            }
+            Timings.run(Timings.CRYPTO, () -> ConvertOperation.checkSignature(encodedItem, key, issuer));
+        }
+        item.convertToLegacy();
+        if (signed) {
+            Timings.run(Timings.CRYPTO, () -> ConvertOperation.sign(item, key, issuer));
+        }
+        return Timings.time(Timings.EXPORT, item::exportToEncoded);
+    }
+
+    // Signatures of the Dime suites (Ed25519) are deterministic, so signing the unsigned item again with the key that
+    // signed it gives back the item as it was
+    private static void checkSignature(String encodedItem, Key key, Identity issuer) throws Exception {
+        Item copy = Item.importFromEncoded(encodedItem);
+        copy.strip();
+        String unsigned = copy.exportToEncoded();
+        ConvertOperation.sign(copy, key, issuer);
+        String signed = copy.exportToEncoded();
+        if (signed.equals(encodedItem.trim())) {
+            return;
+        }
+        if (signed.startsWith(unsigned) && signed.length() > unsigned.length() + 1 && encodedItem.contains(signed.substring(unsigned.length() + 1))) {
+            throw new IllegalArgumentException("Item is also signed by other keys, the legacy format holds one signature.");
+        }
+        throw new IllegalArgumentException("Item was not signed by the key given with " + Option.KEY + ".");
+    }
+
+    private static void sign(Item item, Key key, Identity issuer) throws Exception {
+        if (item instanceof Identity) {
+            Identity identity = (Identity) item;
+            if (identity.isSelfIssued()) {
+                identity.sign(identity, key, false);
+            } else {
+                identity.sign(issuer, key, identity.getTrustChain() != null);
+            }
+        } else {
+            item.sign(key);
+        }
+    }
+
+}
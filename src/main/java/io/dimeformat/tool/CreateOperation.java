@@ -10,14 +10,22 @@
 package io.dimeformat.tool;
 
 import io.dimeformat.Data;
+import io.dimeformat.Envelope;
 import io.dimeformat.Item;
+import io.dimeformat.Key;
 import io.dimeformat.enums.Claim;
+import io.dimeformat.keyring.IntegrityState;
 
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.UUID;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
 
 public class CreateOperation extends Operation {
 
@@ -32,8 +40,16 @@ public class CreateOperation extends Operation {
     public List<Option> getOptions() {
         ArrayList<Option> array = new ArrayList<>();
         Collections.addAll(array,
+                new Option(Option.CHUNK, false, "Splits a payload file into data items of at most this many bytes, written as envelopes, one per line."),
+                new Option(Option.CHUNKS, false, "Number of data items in each envelope when using " + Option.CHUNK + ", defaults to " + CreateOperation.DEFAULT_CHUNKS_PER_ENVELOPE + "."),
                 new Option(Option.CTX, false, "The context to set in the generated item."),
                 new Option(Option.ISS, false, "The identifier (UUID) of the issuer of the item."),
+                new Option(Option.KEY, false, "Dime encoded key to sign every data item with when using " + Option.CHUNK + "."),
+                new Option(Option.MIM, false, "The MIME type of the payload."),
+                new Option(Option.PAYLOAD, true, "The payload to set in the generated item, read as raw bytes if a filename is given."),
+                new Option(Option.REASSEMBLE, false, "File with envelopes created using " + Option.CHUNK + ", use '-' to read from stdin, the payload is written to output once its digest has been checked (output to the screen is written as it is reassembled)."),
+                new Option(Option.VERIFIER, false, "Dime encoded key to verify every data item with when using " + Option.REASSEMBLE + "."),
+                new Option(Option.WORKERS, false, "Number of worker threads to use with " + Option.CHUNK + " or " + Option.REASSEMBLE + ", defaults to number of processors."),
                 new Option(Option.TYPE,
                         true,
                         "Specifies the type of Dime item to create.",
@@ -43,12 +59,24 @@ public class CreateOperation extends Operation {
 
     @Override
     public String execute() throws Exception {
+        if (arguments.hasOption(Option.REASSEMBLE)) {
+            executeReassemble();
+            return null;
+        }
         String type = arguments.get(Option.TYPE);
         if (type == null || type.length() == 0) {
             DimeTool.showErrorMessage(this, "Missing required option: " + Option.TYPE + ".", true);
             return null;
         }
         UUID issuerId = arguments.getUUID(Option.ISS);
+        if (arguments.hasOption(Option.CHUNK)) {
+            if (!type.equalsIgnoreCase("data")) {
+                DimeTool.showErrorMessage(this, "Option " + Option.CHUNK + " is only supported for type data.", true);
+                return null;
+            }
+            executeChunked(issuerId);
+            return null;
+        }
         Item item = create(type, issuerId);
         if (item == null) {
             DimeTool.showErrorMessage(this, "Invalid/unsupported Dime type: " + type + ".", true);
@@ -61,12 +89,16 @@ public class CreateOperation extends Operation {
         if (item instanceof Data) {
             Data data = populateData((Data) item);
             if (data != null) {
-                return data.exportToEncoded();
+                return Timings.time(Timings.EXPORT, data::exportToEncoded);
             }
         }
         return null;
     }
 
+    ///// PRIVATE /////
+
+    private static final long DEFAULT_CHUNKS_PER_ENVELOPE = 16L;
+
     private Item create(String type, UUID issuerId) {
         switch (type.toLowerCase()) {
             case "data":
@@ -76,16 +108,243 @@ public class CreateOperation extends Operation {
         }
     }
 
-    private Data populateData(Data data) {
-        String payload = arguments.get(Option.PAYLOAD);
-        if (payload == null || payload.length() == 0) {
+    private Data populateData(Data data) throws IOException {
+        byte[] payload = arguments.getBytes(Option.PAYLOAD);
+        if (payload == null || payload.length == 0) {
             DimeTool.showErrorMessage(this, "Missing required option: " + Option.PAYLOAD + ".", true);
             return null;
         }
         String mimeType = arguments.get(Option.MIM);
-        data.setPayload(payload.getBytes(StandardCharsets.UTF_8), mimeType);
+        data.setPayload(payload, mimeType);
         return data;
     }
 
+    /// Chunks ///
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    // Every envelope is read from the payload file and encoded by a worker, so at most the batch window of envelopes is
+    // held in memory. Every data item gets a sequence claim (cmn) as "<sequence>/<total>/<payload id>", with sequences
+    // starting at 1. The payload id is the SHA-256 digest of the whole payload, so chunks of different payloads are
+    // never joined and the reassembled payload can be checked
+    private void executeChunked(UUID issuerId) throws Exception {
+        File file = arguments.getFile(Option.PAYLOAD);
+        if (file == null) {
+            DimeTool.showErrorMessage(this, "Option " + Option.CHUNK + " requires " + Option.PAYLOAD + " to be a file.", true);
+            return;
+        }
+        long chunkSize = arguments.getLong(Option.CHUNK, 0L);
+        if (chunkSize <= 0L || chunkSize > Integer.MAX_VALUE - 8) {
+            DimeTool.showErrorMessage(this, "Invalid value for option " + Option.CHUNK + ": " + chunkSize, true);
+            return;
+        }
+        long chunksPerEnvelope = Math.max(1L, arguments.getLong(Option.CHUNKS, CreateOperation.DEFAULT_CHUNKS_PER_ENVELOPE));
+        String encodedKey = arguments.get(Option.KEY);
+        Item keyItem = encodedKey != null && encodedKey.length() > 0 ? Timings.time(Timings.IMPORT, () -> Item.importFromEncoded(encodedKey)) : null;
+        if (keyItem != null && !(keyItem instanceof Key)) {
+            DimeTool.showErrorMessage(this, "Unsupported Dime item: " + Option.KEY + ".", true);
+            return;
+        }
+        Key key = (Key) keyItem;
+        String context = arguments.get(Option.CTX);
+        String mimeType = arguments.get(Option.MIM);
+        BatchProcessor<Long> processor = BatchProcessor.fromArguments(arguments);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+             OutputSink output = OutputSink.open(arguments, getOutputStream())) {
+            long size = channel.size();
+            if (size == 0L) {
+                DimeTool.showErrorMessage(this, "Missing required option: " + Option.PAYLOAD + ".", true);
+                return;
+            }
+            String payloadId = Timings.time(Timings.CRYPTO, () -> CreateOperation.digest(channel, size));
+            long total = (size + chunkSize - 1) / chunkSize;
+            Iterator<Long> envelopes = LongStream.range(0L, (total + chunksPerEnvelope - 1) / chunksPerEnvelope).iterator();
+            process(processor, envelopes, index -> {
+                Envelope envelope = new Envelope();
+                long last = Math.min(total, (index + 1) * chunksPerEnvelope);
+                for (long sequence = index * chunksPerEnvelope; sequence < last; sequence++) {
+                    long position = sequence * chunkSize;
+                    ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(chunkSize, size - position));
+                    while (buffer.hasRemaining()) {
+                        if (channel.read(buffer, position + buffer.position()) < 0) {
+                            throw new EOFException("Payload file changed while reading: " + file);
+                        }
+                    }
+                    Data data = new Data(issuerId);
+                    data.setPayload(buffer.array(), mimeType);
+                    if (context != null && context.length() > 0) {
+                        data.putClaim(Claim.CTX, context);
+                    }
+                    data.putClaim(Claim.CMN, (sequence + 1) + "/" + total + "/" + payloadId);
+                    if (key != null) {
+                        Timings.run(Timings.CRYPTO, () -> data.sign(key));
+                    }
+                    envelope.addItem(data);
+                }
+                return Timings.time(Timings.EXPORT, envelope::exportToEncoded);
+            }, output);
+            if (processor.getFailed() > 0) {
+                getErrorStream().println("[ERROR] Failed to create " + processor.getFailed() + " of " + processor.getProcessed() + " envelopes.");
+                return;
+            }
+            output.commit();
+        }
+    }
+
+    // Envelopes are decoded (and verified if --verifier is given) in parallel and their payloads written in sequence
+    // order through the output. The reassembled payload is only committed once all chunks are written and its digest
+    // matches the payload id, a partial --out file is removed. Output written to the screen cannot be taken back
+    private void executeReassemble() throws Exception {
+        String encodedVerifier = arguments.get(Option.VERIFIER);
+        Item verifierItem = encodedVerifier != null && encodedVerifier.length() > 0 ? Timings.time(Timings.IMPORT, () -> Item.importFromEncoded(encodedVerifier)) : null;
+        if (verifierItem != null && !(verifierItem instanceof Key)) {
+            DimeTool.showErrorMessage(this, "Unsupported Dime item: " + Option.VERIFIER + ".", true);
+            return;
+        }
+        Key verifier = (Key) verifierItem;
+        BatchProcessor<RecordReader.Record> processor = new BatchProcessor<>((int) arguments.getLong(Option.WORKERS, Runtime.getRuntime().availableProcessors()), true);
+        try (RecordReader reader = RecordReader.open(arguments.get(Option.REASSEMBLE));
+             OutputSink output = OutputSink.open(arguments, getOutputStream(), false)) {
+            PayloadWriter payload = new PayloadWriter(output);
+            process(processor, reader, record -> CreateOperation.decodeChunks(record.read(), verifier, payload), payload);
+            if (processor.getFailed() > 0) {
+                getErrorStream().println("[ERROR] Failed to read " + processor.getFailed() + " of " + processor.getProcessed() + " envelopes, payload not reassembled.");
+                return;
+            }
+            payload.finish(arguments.get(Option.REASSEMBLE));
+            output.commit();
+        }
+    }
+
+    // Returns one line for the chunks of an envelope: first sequence, last sequence, total and payload id. The payloads of
+    // the chunks, in sequence order, are handed to the payload writer as they are
+    private static String decodeChunks(String encoded, Key verifier, PayloadWriter payload) throws Exception {
+        Envelope envelope = Timings.time(Timings.IMPORT, () -> Envelope.importFromEncoded(encoded));
+        ByteArrayOutputStream payloads = new ByteArrayOutputStream();
+        Chunk first = null;
+        Chunk previous = null;
+        for (Item item: envelope.getItems()) {
+            if (!(item instanceof Data)) {
+                throw new IllegalStateException("Unexpected item in chunk envelope: " + item.getHeader());
+            }
+            Chunk chunk = new Chunk(item.getClaim(Claim.CMN));
+            if (previous != null && (chunk.sequence != previous.sequence + 1 || !chunk.isSamePayload(previous))) {
+                throw new IllegalStateException("Unexpected chunk " + chunk + " after chunk " + previous + ".");
+            }
+            if (verifier != null) {
+                IntegrityState state = Timings.time(Timings.CRYPTO, () -> item.verify(verifier));
+                if (!state.isValid()) {
+                    throw new IllegalStateException("Chunk " + chunk + " failed verification: " + state + ".");
+                }
+            }
+            payloads.write(((Data) item).getPayload());
+            first = first != null ? first : chunk;
+            previous = chunk;
+        }
+        if (first == null) {
+            throw new IllegalStateException("No chunks in envelope.");
+        }
+        return first.sequence + "\t" + previous.sequence + "\t" + first.total + "\t" + first.payloadId + "\t" + payload.hold(payloads.toByteArray());
+    }
+
+    private static String digest(FileChannel channel, long size) throws IOException, NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance(CreateOperation.DIGEST_ALGORITHM);
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+        for (long position = 0L; position < size; ) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read < 0) { break; }
+            buffer.flip();
+            digest.update(buffer);
+            position += read;
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // Sequence claim of a chunk, "<sequence>/<total>/<payload id>"
+    private static final class Chunk {
+        final long sequence;
+        final long total;
+        final String payloadId;
+        Chunk(String claim) {
+            String[] parts = claim != null ? claim.split("/") : new String[0];
+            if (parts.length != 3) {
+                throw new IllegalStateException("Missing sequence claim in chunk.");
+            }
+            this.sequence = Long.parseLong(parts[0]);
+            this.total = Long.parseLong(parts[1]);
+            this.payloadId = parts[2];
+        }
+        boolean isSamePayload(Chunk other) {
+            return this.total == other.total && this.payloadId.equals(other.payloadId);
+        }
+        @Override
+        public String toString() {
+            return this.sequence + "/" + this.total;
+        }
+    }
+
+    // Receives the lines of decoded envelopes in input order, checks that they continue the payload and writes their
+    // payloads to the output while computing the digest of the payload. The payloads of a line are held by the writer
+    // from when the envelope is decoded until its line is written, the line only refers to them
+    private static final class PayloadWriter extends Writer {
+        private final OutputSink output;
+        private final MessageDigest digest;
+        private final StringBuilder line = new StringBuilder();
+        private final Map<Long, byte[]> held = new ConcurrentHashMap<>();
+        private final AtomicLong holds = new AtomicLong();
+        private long written;
+        private long total = -1L;
+        private String payloadId;
+        PayloadWriter(OutputSink output) throws NoSuchAlgorithmException {
+            this.output = output;
+            this.digest = MessageDigest.getInstance(CreateOperation.DIGEST_ALGORITHM);
+        }
+        long hold(byte[] payloads) {
+            long id = this.holds.incrementAndGet();
+            this.held.put(id, payloads);
+            return id;
+        }
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            for (int i = offset; i < offset + length; i++) {
+                if (buffer[i] == '\n') {
+                    writeLine(this.line.toString());
+                    this.line.setLength(0);
+                } else {
+                    this.line.append(buffer[i]);
+                }
+            }
+        }
+        private void writeLine(String line) throws IOException {
+            String[] fields = line.split("\t");
+            long first = Long.parseLong(fields[0]);
+            long total = Long.parseLong(fields[2]);
+            if (first != this.written + 1 || (this.payloadId != null && (total != this.total || !fields[3].equals(this.payloadId)))) {
+                throw new IOException("Unexpected chunk " + first + "/" + total + " after chunk " + this.written + ".");
+            }
+            byte[] bytes = this.held.remove(Long.parseLong(fields[4]));
+            this.digest.update(bytes);
+            this.output.writeBytes(bytes);
+            this.written = Long.parseLong(fields[1]);
+            this.total = total;
+            this.payloadId = fields[3];
+        }
+        void finish(String source) {
+            if (this.payloadId == null) {
+                throw new IllegalStateException("No chunks found in: " + source);
+            } else if (this.written != this.total) {
+                throw new IllegalStateException("Missing chunks, expected " + this.total + " but found " + this.written + ".");
+            } else if (!HexFormat.of().formatHex(this.digest.digest()).equals(this.payloadId)) {
+                throw new IllegalStateException("Reassembled payload does not match its payload id.");
+            }
+        }
+        @Override
+        public void flush() throws IOException {
+            this.output.flush();
+        }
+        @Override
+        public void close() { }
+    }
 
 }
@@ -0,0 +1,119 @@
+//
+//  DaemonProtocol.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+// Wire format between DimeClient and ServeOperation. A request is the argument count followed by each argument as a
+// length-prefixed UTF-8 string. A response is a sequence of frames, each starting with a frame type: output and error
+// frames carry a length-prefixed chunk of bytes, the exit frame carries the status code and ends the response.
+final class DaemonProtocol {
+
+    static final byte FRAME_OUT = 1;
+    static final byte FRAME_ERR = 2;
+    static final byte FRAME_EXIT = 3;
+
+    static void writeRequest(DataOutputStream stream, String[] args) throws IOException {
+        stream.writeInt(args.length);
+        for (String arg: args) {
+            byte[] bytes = arg.getBytes(StandardCharsets.UTF_8);
+            stream.writeInt(bytes.length);
+            stream.write(bytes);
+        }
+        stream.flush();
+    }
+
+    static String[] readRequest(DataInputStream stream) throws IOException {
+        int count = stream.readInt();
+        if (count < 0 || count > DaemonProtocol.MAX_ARGUMENTS) {
+            throw new IOException("Invalid request received.");
+        }
+        String[] args = new String[count];
+        for (int index = 0; index < count; index++) {
+            byte[] bytes = new byte[DaemonProtocol.readLength(stream)];
+            stream.readFully(bytes);
+            args[index] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return args;
+    }
+
+    // Length of the next argument or frame, checked before anything is allocated for it
+    static int readLength(DataInputStream stream) throws IOException {
+        int length = stream.readInt();
+        if (length < 0 || length > DaemonProtocol.MAX_ARGUMENT_BYTES) {
+            throw new IOException("Invalid request received.");
+        }
+        return length;
+    }
+
+    static void writeExit(DataOutputStream stream, int status) throws IOException {
+        synchronized (stream) {
+            stream.writeByte(DaemonProtocol.FRAME_EXIT);
+            stream.writeInt(status);
+            stream.flush();
+        }
+    }
+
+    static PrintStream frameStream(DataOutputStream stream, byte frameType) {
+        return new PrintStream(new BufferedOutputStream(new FrameOutputStream(stream, frameType), DaemonProtocol.FRAME_SIZE), false, StandardCharsets.UTF_8);
+    }
+
+    ///// PRIVATE /////
+
+    private static final int MAX_ARGUMENTS = 1 << 16;
+    private static final int MAX_ARGUMENT_BYTES = 1 << 26;
+    private static final int FRAME_SIZE = 1 << 16;
+
+    private DaemonProtocol() { }
+
+    private static final class FrameOutputStream extends OutputStream {
+
+        private final DataOutputStream stream;
+        private final byte frameType;
+
+        FrameOutputStream(DataOutputStream stream, byte frameType) {
+            this.stream = stream;
+            this.frameType = frameType;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        // Large writes are split, so that no frame is longer than FRAME_SIZE
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            synchronized (this.stream) {
+                for (int end = off + len; off < end; off += DaemonProtocol.FRAME_SIZE) {
+                    int length = Math.min(DaemonProtocol.FRAME_SIZE, end - off);
+                    this.stream.writeByte(this.frameType);
+                    this.stream.writeInt(length);
+                    this.stream.write(b, off, length);
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (this.stream) {
+                this.stream.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush(); // The connection is owned by the server, leave it open
+        }
+
+    }
+
+}
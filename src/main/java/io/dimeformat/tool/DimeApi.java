@@ -0,0 +1,250 @@
+//
+//  DimeApi.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import io.dimeformat.*;
+import io.dimeformat.enums.IdentityCapability;
+import io.dimeformat.enums.KeyCapability;
+import io.dimeformat.keyring.IntegrityState;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Collectors;
+
+// In-process API for use from other JVM applications. Items are passed as objects, nothing is written to stdout or
+// stderr and errors are returned as results, never thrown. An instance is thread-safe and may be shared, items
+// themselves are not, so an item should not be signed by one thread while used by another. Calls are made under the
+// same lock as non-exclusive operations, so an exclusive operation running in the same JVM never changes the global
+// library state underneath a call.
+public final class DimeApi {
+
+    ///// PUBLIC /////
+
+    public static final class Result<T> {
+
+        public boolean isSuccess() {
+            return this.error == null;
+        }
+
+        public T getValue() {
+            return this.value;
+        }
+
+        public String getError() {
+            return this.error;
+        }
+
+        public Exception getException() {
+            return this.exception;
+        }
+
+        private final T value;
+        private final String error;
+        private final Exception exception;
+
+        private Result(T value, String error, Exception exception) {
+            this.value = value;
+            this.error = error;
+            this.exception = exception;
+        }
+
+        static <T> Result<T> success(T value) {
+            return new Result<>(value, null, null);
+        }
+
+        static <T> Result<T> failure(String error, Exception exception) {
+            return new Result<>(null, error, exception);
+        }
+
+    }
+
+    public DimeApi() {
+        this(null);
+    }
+
+    // Items verified without a verifier are verified against identities in the given trust store
+    public DimeApi(TrustStore trustStore) {
+        this.trustStore = trustStore;
+    }
+
+    /// Import and export ///
+
+    // Fails unless the item is of the given type, so that a wrong item is reported as a result, not as a
+    // ClassCastException where the value is used
+    public <T extends Item> Result<T> importItem(Class<T> type, String encoded) {
+        return call(() -> {
+            Item item = Item.importFromEncoded(encoded);
+            if (!type.isInstance(item)) {
+                throw new IllegalArgumentException("Item is not of type " + type.getSimpleName() + (item != null ? ": " + item.getHeader() : "") + ".");
+            }
+            return type.cast(item);
+        });
+    }
+
+    public <T extends Item> Result<T> importItem(Class<T> type, byte[] encoded) {
+        return importItem(type, new String(encoded, StandardCharsets.UTF_8));
+    }
+
+    public Result<String> exportItem(Item item) {
+        return call(item::exportToEncoded);
+    }
+
+    public Result<String> thumbprint(Item item) {
+        return call(item::generateThumbprint);
+    }
+
+    /// Keys and identities ///
+
+    // Keys are taken from the key pool, if one is enabled using KeyPool.setPoolSize
+    public Result<Key> generateKey(List<KeyCapability> capabilities, long validFor, UUID issuerId, String context, String suite) {
+        return call(() -> KeyPool.take(capabilities, validFor, issuerId, context, suite != null ? suite : Dime.crypto.getDefaultSuiteName()));
+    }
+
+    public Result<IdentityIssuingRequest> generateIir(Key key, IdentityCapability... capabilities) {
+        return call(() -> IdentityIssuingRequest.generateIIR(key, capabilities));
+    }
+
+    public Result<Identity> selfIssue(IdentityIssuingRequest iir, UUID subjectId, long validFor, Key key, String systemName, String[] ambit, String[] methods) {
+        return call(() -> iir.selfIssueIdentity(subjectId, validFor, key, systemName, ambit, methods));
+    }
+
+    // Returns an issuer that may be kept and used from any number of threads. Unlike the issue operation, the issuer
+    // is not put into the key ring, that is left to the caller
+    public Issuer issuer(Identity identity, Key key, long validFor, boolean includeChain, IdentityCapability[] allowedCapabilities, IdentityCapability[] requiredCapabilities, String systemName, String[] ambit, String[] methods) {
+        return new Issuer(new IssueOperation.Issuer(validFor, key, identity, includeChain, allowedCapabilities, requiredCapabilities, systemName, ambit, methods));
+    }
+
+    public final class Issuer {
+
+        public Result<Identity> issue(IdentityIssuingRequest iir) {
+            return issue(iir, UUID.randomUUID());
+        }
+
+        public Result<Identity> issue(IdentityIssuingRequest iir, UUID subjectId) {
+            return call(() -> this.issuer.issue(iir, subjectId));
+        }
+
+        private final IssueOperation.Issuer issuer;
+
+        private Issuer(IssueOperation.Issuer issuer) {
+            this.issuer = issuer;
+        }
+
+    }
+
+    public Result<Data> createData(UUID issuerId, byte[] payload, String mimeType) {
+        return call(() -> {
+            Data data = new Data(issuerId);
+            data.setPayload(payload, mimeType);
+            return data;
+        });
+    }
+
+    /// Signing and verification ///
+
+    // Signs the given item, which is returned. A signed item is stripped and signed again only if resign is set
+    public <T extends Item> Result<T> sign(T item, Key key, boolean resign) {
+        return call(() -> {
+            if (item.isSigned()) {
+                if (!resign) {
+                    throw new IllegalStateException("Item is already signed.");
+                }
+                item.strip();
+            }
+            item.sign(key);
+            return item;
+        });
+    }
+
+    // The verifier is either a key or an identity
+    public Result<IntegrityState> verify(Item item, Item verifier) {
+        return call(() -> DimeApi.verifyWith(item, verifier));
+    }
+
+    // Verifies against every identity in the trust store that may have signed the item, until one of them is valid
+    public Result<IntegrityState> verify(Item item) {
+        if (this.trustStore == null) {
+            return Result.failure("No trust store to verify against.", null);
+        }
+        return call(() -> {
+            List<TrustStore.Entry> verifiers = this.trustStore.verifiersFor(item);
+            if (verifiers.isEmpty()) {
+                throw new IllegalStateException("No verifier for item found in trust store.");
+            }
+            IntegrityState state = null;
+            for (TrustStore.Entry entry: verifiers) {
+                state = DimeApi.verifyWith(item, entry.identity());
+                if (state.isValid()) { break; }
+            }
+            return state;
+        });
+    }
+
+    /// Operations ///
+
+    // Runs an operation as it would be run from the command line and returns its output. This is for operations
+    // without a typed method here, it parses its arguments and should not be used where calls are frequent. Operations
+    // that run until stopped, or run other operations, are not accepted
+    public Result<String> execute(String... args) {
+        if (args.length > 0 && DimeApi.UNSUPPORTED_OPERATIONS.contains(args[0])) {
+            return Result.failure("Operation can not be executed through the API: " + args[0], null);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int status;
+        try (PrintStream outStream = new PrintStream(out, false, StandardCharsets.UTF_8);
+             PrintStream errStream = new PrintStream(err, false, StandardCharsets.UTF_8)) {
+            status = DimeTool.run(args, outStream, errStream);
+        }
+        // Operations report errors on stderr without failing, so any error line makes the call fail
+        String errors = err.toString(StandardCharsets.UTF_8).lines()
+                .filter(line -> line.startsWith(DimeApi.ERROR_PREFIX))
+                .map(line -> line.substring(DimeApi.ERROR_PREFIX.length()))
+                .collect(Collectors.joining("\n"));
+        if (status != 0 || errors.length() > 0) {
+            return Result.failure(errors.length() > 0 ? errors : "Operation failed with status " + status + ".", null);
+        }
+        return Result.success(out.toString(StandardCharsets.UTF_8));
+    }
+
+    ///// PRIVATE /////
+
+    private static final String ERROR_PREFIX = "[ERROR] ";
+    private static final Set<String> UNSUPPORTED_OPERATIONS = Set.of(ServeOperation.NAME, WatchOperation.NAME, RunOperation.NAME, BenchOperation.NAME);
+
+    private final TrustStore trustStore;
+
+    private <T> Result<T> call(Timings.Timed<T> task) {
+        Lock lock = DimeTool.sharedLock();
+        lock.lock();
+        try {
+            return Result.success(task.call());
+        } catch (Exception e) {
+            return Result.failure(e.getMessage() != null ? e.getMessage() : e.toString(), e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static IntegrityState verifyWith(Item item, Item verifier) throws Exception {
+        if (verifier instanceof Key) {
+            return item.verify((Key) verifier);
+        } else if (verifier instanceof Identity) {
+            return item.verify((Identity) verifier);
+        }
+        throw new IllegalArgumentException("Verifier must be a key or an identity.");
+    }
+
+}
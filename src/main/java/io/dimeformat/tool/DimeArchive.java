@@ -0,0 +1,483 @@
+//
+//  DimeArchive.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+// Single file archive of Dime encoded items. The file starts with a magic number and holds one or more segments, every
+// append adds a segment so existing bytes are never rewritten. A segment is (all big-endian):
+//   records: thumbprint length (short), thumbprint, item type length (byte), item type, item length (int), item
+//   index:   entries of thumbprint hash (long), record offset (long), item type (4 bytes), sorted by hash
+//   types:   entry numbers (int) sorted by item type and record offset
+//   footer:  previous footer offset (long), index offset (long), entry count (int), version (int), magic (int)
+// The whole file is memory-mapped when it fits in a single mapping, otherwise records are read by position. A segment
+// is committed once its footer is written, an interrupted append leaves a torn tail without a footer at the end of the
+// file. The tail is skipped when the archive is read and cut off by the next append.
+public final class DimeArchive implements Closeable {
+
+    ///// PUBLIC /////
+
+    public static final class Entry {
+        public final String thumbprint;
+        public final String type;
+        public final long offset;
+        Entry(String thumbprint, String type, long offset) {
+            this.thumbprint = thumbprint;
+            this.type = type;
+            this.offset = offset;
+        }
+    }
+
+    public static boolean isArchive(Path file) {
+        if (!Files.isRegularFile(file)) { return false; }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(8);
+            while (header.hasRemaining() && channel.read(header) >= 0) { /* keep reading */ }
+            return !header.hasRemaining() && header.getLong(0) == DimeArchive.FILE_MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public static DimeArchive open(Path file) throws IOException {
+        return new DimeArchive(file, Integer.MAX_VALUE);
+    }
+
+    // Maps the file only if it is at most mappingLimit bytes, otherwise records are read by position
+    static DimeArchive open(Path file, long mappingLimit) throws IOException {
+        return new DimeArchive(file, mappingLimit);
+    }
+
+    /// Lookup ///
+
+    public long size() {
+        long size = 0;
+        for (Segment segment: this.segments) {
+            size += segment.count;
+        }
+        return size;
+    }
+
+    public String get(String thumbprint) throws IOException {
+        long hash = Utility.hash64(thumbprint);
+        for (int s = this.segments.size() - 1; s >= 0; s--) { // Newest segment first
+            Segment segment = this.segments.get(s);
+            int low = 0;
+            int high = segment.count - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                long value = segment.index.getLong(middle * DimeArchive.ENTRY_SIZE);
+                if (value < hash) {
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            for (int i = low; i < segment.count && segment.index.getLong(i * DimeArchive.ENTRY_SIZE) == hash; i++) {
+                Entry entry = readEntry(segment.index.getLong(i * DimeArchive.ENTRY_SIZE + 8));
+                if (entry.thumbprint.equals(thumbprint)) {
+                    return readItem(entry);
+                }
+            }
+        }
+        return null;
+    }
+
+    // Entries of one item type, in the order they were appended
+    public List<Entry> findByType(String type) throws IOException {
+        byte[] wanted = DimeArchive.typeBytes(type);
+        List<Entry> entries = new ArrayList<>();
+        for (Segment segment: this.segments) {
+            int low = 0;
+            int high = segment.count - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (compareType(segment, segment.types.getInt(middle * 4), wanted) < 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle - 1;
+                }
+            }
+            for (int i = low; i < segment.count; i++) {
+                int entry = segment.types.getInt(i * 4);
+                if (compareType(segment, entry, wanted) != 0) { break; }
+                entries.add(readEntry(segment.index.getLong(entry * DimeArchive.ENTRY_SIZE + 8)));
+            }
+        }
+        return entries;
+    }
+
+    // All entries in the order they were appended
+    public Iterator<Entry> entries() {
+        return new Iterator<>() {
+            private int segment = 0;
+            private long offset = DimeArchive.this.segments.isEmpty() ? 0 : DimeArchive.this.segments.get(0).start;
+            @Override
+            public boolean hasNext() {
+                while (this.segment < DimeArchive.this.segments.size() && this.offset >= DimeArchive.this.segments.get(this.segment).indexOffset) {
+                    this.segment++;
+                    if (this.segment < DimeArchive.this.segments.size()) {
+                        this.offset = DimeArchive.this.segments.get(this.segment).start;
+                    }
+                }
+                return this.segment < DimeArchive.this.segments.size();
+            }
+            @Override
+            public Entry next() {
+                if (!hasNext()) { throw new NoSuchElementException(); }
+                try {
+                    Entry entry = readEntry(this.offset);
+                    this.offset = itemOffset(entry) + 4 + readInt(itemOffset(entry));
+                    return entry;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    public String readItem(Entry entry) throws IOException {
+        long position = itemOffset(entry);
+        byte[] bytes = read(position + 4, readInt(position));
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    /// Append ///
+
+    // Appends a segment, the file is truncated back to its previous length if the append is not committed
+    public static final class Appender implements Closeable {
+
+        public void append(String thumbprint, String type, String encoded) throws IOException {
+            byte[] thumbprintBytes = thumbprint.getBytes(StandardCharsets.UTF_8);
+            byte[] typeBytes = type.getBytes(StandardCharsets.UTF_8);
+            byte[] item = encoded.getBytes(StandardCharsets.UTF_8);
+            this.entries.add(new Record(Utility.hash64(thumbprint), this.position, DimeArchive.typeBytes(type)));
+            this.output.writeShort(thumbprintBytes.length);
+            this.output.write(thumbprintBytes);
+            this.output.writeByte(typeBytes.length);
+            this.output.write(typeBytes);
+            this.output.writeInt(item.length);
+            this.output.write(item);
+            this.position += 2 + thumbprintBytes.length + 1 + typeBytes.length + 4 + item.length;
+        }
+
+        // Looks up an item in the archive as it was before this append
+        public String get(String thumbprint) throws IOException {
+            return this.existing != null ? this.existing.get(thumbprint) : null;
+        }
+
+        public long getAppended() {
+            return this.entries.size();
+        }
+
+        public void commit() throws IOException {
+            if (this.entries.isEmpty()) { // Nothing to append, leave the archive as it was
+                this.output.flush();
+                this.committed = true;
+                return;
+            }
+            long indexOffset = this.position;
+            List<Record> sorted = new ArrayList<>(this.entries);
+            sorted.sort(Comparator.comparingLong(record -> record.hash));
+            for (Record record: sorted) {
+                this.output.writeLong(record.hash);
+                this.output.writeLong(record.offset);
+                this.output.write(record.type);
+            }
+            Integer[] types = new Integer[sorted.size()];
+            for (int i = 0; i < types.length; i++) { types[i] = i; }
+            Arrays.sort(types, (a, b) -> {
+                int result = Arrays.compare(sorted.get(a).type, sorted.get(b).type);
+                return result != 0 ? result : Long.compare(sorted.get(a).offset, sorted.get(b).offset);
+            });
+            for (Integer type: types) {
+                this.output.writeInt(type);
+            }
+            this.output.writeLong(this.previousFooter);
+            this.output.writeLong(indexOffset);
+            this.output.writeInt(sorted.size());
+            this.output.writeInt(DimeArchive.VERSION);
+            this.output.writeInt(DimeArchive.FOOTER_MAGIC);
+            this.output.flush();
+            this.committed = true;
+        }
+
+        // Releases the lock, after an uncommitted append has been cut off
+        @Override
+        public void close() throws IOException {
+            try {
+                if (this.committed) {
+                    this.output.flush();
+                } else {
+                    this.channel.truncate(this.originalLength);
+                }
+            } finally {
+                try {
+                    this.channel.close();
+                } finally {
+                    DimeArchive.release(this.file);
+                }
+            }
+        }
+
+        private static final class Record {
+            final long hash;
+            final long offset;
+            final byte[] type;
+            Record(long hash, long offset, byte[] type) {
+                this.hash = hash;
+                this.offset = offset;
+                this.type = type;
+            }
+        }
+
+        private final Path file;
+        private final FileChannel channel;
+        private final long originalLength;
+        private final long previousFooter;
+        private final DimeArchive existing;
+        private final DataOutputStream output;
+        private final List<Record> entries = new ArrayList<>();
+        private long position;
+        private boolean committed;
+
+        // The lock is taken before the current end of the archive is read and held until the appender is closed, so
+        // that concurrent appends, also from other processes, are serialized and never interleave their segments. The
+        // existing segments are read through the locking channel, as closing any other channel to the file may release
+        // the lock on some platforms. File locks are held by the process, so appends within it wait for each other first
+        private Appender(Path file) throws IOException {
+            this.file = DimeArchive.acquire(file);
+            try {
+                this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            } catch (IOException | RuntimeException e) {
+                DimeArchive.release(this.file);
+                throw e;
+            }
+            try {
+                this.channel.lock();
+                long size = this.channel.size();
+                this.existing = size > 0 ? new DimeArchive(this.channel, size, Integer.MAX_VALUE, file) : null;
+                this.originalLength = this.existing != null ? this.existing.length : 0L;
+                if (this.originalLength < size) {
+                    this.channel.truncate(this.originalLength); // Torn tail of an interrupted append
+                }
+                this.previousFooter = this.existing != null ? this.existing.footerOffset : -1L;
+                this.channel.position(this.originalLength);
+                this.output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(this.channel), 1 << 20));
+            } catch (IOException | RuntimeException e) {
+                this.channel.close();
+                DimeArchive.release(this.file);
+                throw e;
+            }
+            this.position = this.originalLength;
+            if (this.originalLength == 0) {
+                this.output.writeLong(DimeArchive.FILE_MAGIC);
+                this.position = 8;
+            }
+        }
+
+    }
+
+    public static Appender append(Path file) throws IOException {
+        return new Appender(file);
+    }
+
+    ///// PRIVATE /////
+
+    private static final long FILE_MAGIC = 0x44494D4541524331L; // "DIMEARC1"
+    private static final int FOOTER_MAGIC = 0x44415246; // "DARF"
+    private static final int VERSION = 1;
+    private static final int FOOTER_SIZE = 28;
+    private static final int ENTRY_SIZE = 20;
+    private static final int TYPE_SIZE = 4;
+    private static final int SCAN_SIZE = 1 << 16;
+
+    private static final class Segment {
+        final long start;
+        final long indexOffset;
+        final int count;
+        final ByteBuffer index;
+        final ByteBuffer types;
+        Segment(long start, long indexOffset, int count, ByteBuffer index, ByteBuffer types) {
+            this.start = start;
+            this.indexOffset = indexOffset;
+            this.count = count;
+            this.index = index;
+            this.types = types;
+        }
+    }
+
+    private static final Set<Path> appending = new HashSet<>();
+
+    private final FileChannel channel;
+    private final MappedByteBuffer mapped;
+    private final List<Segment> segments = new ArrayList<>();
+    private final long footerOffset; // Footer of the last committed segment, -1 if there is none
+    private final long length; // End of the last committed segment, anything after it is a torn tail
+
+    private DimeArchive(Path file, long mappingLimit) throws IOException {
+        this(FileChannel.open(file, StandardOpenOption.READ), -1L, mappingLimit, file);
+    }
+
+    // Reads the first size bytes of the channel, or all of it if size is negative
+    private DimeArchive(FileChannel channel, long size, long mappingLimit, Path file) throws IOException {
+        this.channel = channel;
+        if (size < 0) {
+            size = channel.size();
+        }
+        this.mapped = size <= mappingLimit ? this.channel.map(FileChannel.MapMode.READ_ONLY, 0, size) : null;
+        if (size < 8 || ByteBuffer.wrap(read(0, 8)).getLong() != DimeArchive.FILE_MAGIC) {
+            this.channel.close();
+            throw new IOException("Not a Dime archive: " + file);
+        }
+        long footer = size - DimeArchive.FOOTER_SIZE;
+        List<Segment> segments = size > 8 && footer >= 8 ? readSegments(footer) : null;
+        if (segments == null && footer >= 8 && readInt(footer + 24) == DimeArchive.FOOTER_MAGIC) {
+            this.channel.close();
+            throw new IOException("Corrupt Dime archive: " + file);
+        }
+        while (segments == null) { // Torn tail, or an empty archive
+            footer = previousFooter(footer);
+            segments = footer >= 0 ? readSegments(footer) : List.of();
+        }
+        this.footerOffset = segments.isEmpty() ? -1L : footer;
+        this.length = segments.isEmpty() ? 8 : footer + DimeArchive.FOOTER_SIZE;
+        this.segments.addAll(segments);
+    }
+
+    // Segments chained from the footer, oldest first, or null if the footer does not start a valid chain
+    private List<Segment> readSegments(long footer) throws IOException {
+        List<Segment> segments = new ArrayList<>();
+        while (footer >= 0) {
+            ByteBuffer buffer = ByteBuffer.wrap(read(footer, DimeArchive.FOOTER_SIZE));
+            long previous = buffer.getLong(0);
+            long indexOffset = buffer.getLong(8);
+            int count = buffer.getInt(16);
+            long start = previous >= 0 ? previous + DimeArchive.FOOTER_SIZE : 8;
+            if (footer < 8 || buffer.getInt(24) != DimeArchive.FOOTER_MAGIC || buffer.getInt(20) != DimeArchive.VERSION || previous >= footer
+                    || count < 0 || indexOffset < start || indexOffset + (long) count * (DimeArchive.ENTRY_SIZE + 4) != footer) {
+                return null;
+            }
+            ByteBuffer index = map(indexOffset, count * DimeArchive.ENTRY_SIZE);
+            ByteBuffer types = map(indexOffset + (long) count * DimeArchive.ENTRY_SIZE, count * 4);
+            segments.add(new Segment(start, indexOffset, count, index, types));
+            footer = previous;
+        }
+        Collections.reverse(segments);
+        return segments;
+    }
+
+    // Offset of the nearest footer magic before the given footer offset, scanned backwards in blocks, or -1 if there is
+    // none. Only a candidate, the chain of segments it ends is still to be checked
+    private long previousFooter(long footer) throws IOException {
+        long low = 8 + DimeArchive.FOOTER_SIZE - 4;
+        long high = footer + DimeArchive.FOOTER_SIZE - 4; // Positions of the magic, exclusive
+        while (high > low) {
+            long start = Math.max(low, high - DimeArchive.SCAN_SIZE);
+            ByteBuffer block = ByteBuffer.wrap(read(start, (int) (high - start) + 3));
+            for (int i = (int) (high - start) - 1; i >= 0; i--) {
+                if (block.getInt(i) == DimeArchive.FOOTER_MAGIC) {
+                    return start + i + 4 - DimeArchive.FOOTER_SIZE;
+                }
+            }
+            high = start;
+        }
+        return -1L;
+    }
+
+    private static Path acquire(Path file) throws IOException {
+        Path path = file.toAbsolutePath().normalize();
+        synchronized (DimeArchive.appending) {
+            while (!DimeArchive.appending.add(path)) {
+                try {
+                    DimeArchive.appending.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting to append to " + file);
+                }
+            }
+        }
+        return path;
+    }
+
+    private static void release(Path path) {
+        synchronized (DimeArchive.appending) {
+            DimeArchive.appending.remove(path);
+            DimeArchive.appending.notifyAll();
+        }
+    }
+
+    private ByteBuffer map(long offset, int length) throws IOException {
+        if (this.mapped != null) {
+            return this.mapped.slice((int) offset, length);
+        }
+        return this.channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+    }
+
+    private byte[] read(long offset, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        if (this.mapped != null) {
+            this.mapped.get((int) offset, bytes);
+        } else {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                if (this.channel.read(buffer, offset + buffer.position()) < 0) {
+                    throw new EOFException("Truncated Dime archive.");
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private int readInt(long offset) throws IOException {
+        return ByteBuffer.wrap(read(offset, 4)).getInt();
+    }
+
+    private Entry readEntry(long offset) throws IOException {
+        int thumbprintLength = ByteBuffer.wrap(read(offset, 2)).getShort() & 0xFFFF;
+        String thumbprint = new String(read(offset + 2, thumbprintLength), StandardCharsets.UTF_8);
+        long typeOffset = offset + 2 + thumbprintLength;
+        int typeLength = read(typeOffset, 1)[0] & 0xFF;
+        String type = new String(read(typeOffset + 1, typeLength), StandardCharsets.UTF_8);
+        return new Entry(thumbprint, type, offset);
+    }
+
+    private static long itemOffset(Entry entry) {
+        return entry.offset + 2 + entry.thumbprint.getBytes(StandardCharsets.UTF_8).length + 1 + entry.type.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static byte[] typeBytes(String type) {
+        byte[] bytes = new byte[DimeArchive.TYPE_SIZE];
+        byte[] source = type.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(source, 0, bytes, 0, Math.min(source.length, bytes.length));
+        return bytes;
+    }
+
+    private static int compareType(Segment segment, int entry, byte[] wanted) {
+        byte[] type = new byte[DimeArchive.TYPE_SIZE];
+        segment.index.get(entry * DimeArchive.ENTRY_SIZE + 16, type);
+        return Arrays.compare(type, wanted);
+    }
+
+}
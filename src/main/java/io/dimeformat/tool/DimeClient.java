@@ -0,0 +1,124 @@
+//
+//  DimeClient.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+public class DimeClient {
+
+    ///// PUBLIC /////
+
+    public static final String SOCKET_ENVIRONMENT = "DIMETOOL_SOCKET";
+
+    public static String socketPath(String[] args) {
+        if (args == null || args.length == 0 || args[0].equals(ServeOperation.NAME)) {
+            return null;
+        }
+        for (int index = 1; index < args.length - 1; index++) {
+            if (args[index].equals(Option.SOCKET)) {
+                return args[index + 1];
+            }
+        }
+        String path = System.getenv(DimeClient.SOCKET_ENVIRONMENT);
+        return path != null && path.length() > 0 ? path : null;
+    }
+
+    // Forwards the invocation to a running daemon, returns null if the invocation should be executed locally instead
+    public static Integer forward(String socketPath, String[] args) {
+        String outputFile = null;
+        List<String> forwarded = new ArrayList<>(args.length);
+        for (int index = 0; index < args.length; index++) {
+            String arg = args[index];
+            if (index > 0 && (arg.equals(Option.SOCKET) || arg.equals(Option.OUT)) && index + 1 < args.length) {
+                if (arg.equals(Option.OUT)) {
+                    outputFile = args[index + 1];
+                }
+                index++;
+            } else if (arg.equals(RecordReader.STDIN)) {
+                return null; // Input from stdin is only supported locally
+            } else if (index > 1 && Option.isPath(args[index - 1]) && !arg.startsWith(Arguments.OPTION_PREFIX)) {
+                forwarded.add(new File(arg).getAbsolutePath()); // Also paths that do not exist yet, such as output
+            } else if (index > 0 && arg.startsWith(Arguments.FILE_PREFIX)) {
+                forwarded.add(Arguments.FILE_PREFIX + new File(arg.substring(Arguments.FILE_PREFIX.length())).getAbsolutePath());
+            } else {
+                File file = new File(arg);
+                forwarded.add(index > 0 && file.exists() ? file.getAbsolutePath() : arg);
+            }
+        }
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+            try {
+                channel.connect(UnixDomainSocketAddress.of(socketPath));
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            return null; // No daemon, nothing has been sent
+        }
+        // Once the request may have been received, the daemon may have executed it, so the invocation must not be
+        // executed again locally
+        try (channel) {
+            DataOutputStream request = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            DaemonProtocol.writeRequest(request, forwarded.toArray(new String[0]));
+            return readResponse(new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel))), outputFile);
+        } catch (IOException e) {
+            System.err.println("[ERROR] Lost connection to daemon at " + socketPath + ", the operation may or may not have completed: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    ///// PRIVATE /////
+
+    // Output for --out is written to a temporary file that replaces the file only if the daemon reports success
+    private static int readResponse(DataInputStream response, String outputFile) throws IOException {
+        File temporary = outputFile != null ? new File(outputFile + "." + ProcessHandle.current().pid() + ".tmp") : null;
+        OutputStream out = temporary != null ? new BufferedOutputStream(new FileOutputStream(temporary)) : System.out;
+        int status = -1;
+        try {
+            while (true) {
+                byte frameType = response.readByte();
+                if (frameType == DaemonProtocol.FRAME_EXIT) {
+                    status = response.readInt();
+                    return status;
+                }
+                byte[] bytes = new byte[DaemonProtocol.readLength(response)];
+                response.readFully(bytes);
+                if (frameType == DaemonProtocol.FRAME_OUT) {
+                    out.write(bytes);
+                } else {
+                    System.err.write(bytes);
+                }
+            }
+        } finally {
+            out.flush();
+            System.err.flush();
+            if (temporary != null) {
+                out.close();
+                if (status == 0) {
+                    Files.move(temporary.toPath(), Path.of(outputFile), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } else {
+                    Files.deleteIfExists(temporary.toPath());
+                }
+            }
+        }
+    }
+
+}
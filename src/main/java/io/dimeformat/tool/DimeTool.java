@@ -10,7 +10,12 @@
 package io.dimeformat.tool;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class DimeTool {
 
@@ -24,7 +29,13 @@ public class DimeTool {
     /// Contractors ///
 
     public DimeTool(String[] args) {
+        this(args, System.out, System.err);
+    }
+
+    public DimeTool(String[] args, PrintStream out, PrintStream err) {
         this.arguments = new Arguments(args);
+        this.out = out;
+        this.err = err;
     }
 
     /// Execute ///
@@ -32,46 +43,127 @@ public class DimeTool {
     public int execute() throws Exception {
         String operationName = arguments.getOperationName();
         if (operationName == null) {
-            showErrorMessage(null, "Missing required operation.", true);
+            showErrorMessage(this.err, null, "Missing required operation.", true);
             return -1;
         } else if (operationName.equals(Option.VERSION)) {
-            System.out.println(DimeTool.TOOL_NAME + " v" + DimeTool.TOOL_VERSION + " (io.dimeformat:dime-java-ref:" + DimeTool.DIME_VERSION + ")");
+            this.out.println(DimeTool.TOOL_NAME + " v" + DimeTool.TOOL_VERSION + " (io.dimeformat:dime-java-ref:" + DimeTool.DIME_VERSION + ")");
         } else if (operationName.equals(Option.HELP)) {
-            showHelp(null, System.out);
+            showHelp(null, this.out);
         } else if (operationName.equals(Option.SUITES)) {
-            System.out.println("\n\tSuite\t\tDescription");
-            System.out.println("\t-----\t\t-----------");
-            System.out.println("\tSTN\t\t\tDiME Standard Cryptographic Suite");
-            System.out.println("\t\t\t\t\tEd25519\t\t\t\t(Digital signatures)");
-            System.out.println("\t\t\t\t\tX25519\t\t\t\t(Key agreement)");
-            System.out.println("\t\t\t\t\tSalsa20-Poly1305\t(Secret key encryption)");
-            System.out.println("\t\t\t\t\tBlake2\t\t\t\t(Cryptographic hash)");
+            this.out.println("\n\tSuite\t\tDescription");
+            this.out.println("\t-----\t\t-----------");
+            this.out.println("\tSTN\t\t\tDiME Standard Cryptographic Suite");
+            this.out.println("\t\t\t\t\tEd25519\t\t\t\t(Digital signatures)");
+            this.out.println("\t\t\t\t\tX25519\t\t\t\t(Key agreement)");
+            this.out.println("\t\t\t\t\tSalsa20-Poly1305\t(Secret key encryption)");
+            this.out.println("\t\t\t\t\tBlake2\t\t\t\t(Cryptographic hash)");
         } else {
             Operation operation = Operation.fetchOperation(arguments);
             if (operation == null) {
-                showErrorMessage(null, "Unsupported operation: '" + operationName + "'.", true);
+                showErrorMessage(this.err, null, "Unsupported operation: '" + operationName + "'.", true);
                 return -1;
-            } else  if (arguments.size() == 0) {
+            }
+            operation.setStreams(this.out, this.err);
+            this.operation = operation;
+            if (arguments.size() == 0) {
                 showErrorMessage(operation, "Missing required options.", true);
                 return -1;
             } else {
-                if (operation.showHelp()) {
-                    DimeTool.showHelp(operation, System.out);
-                } else {
-                    String output = operation.execute();
-                    if (output != null) {
-                        if (arguments.hasOption(Option.OUT)) {
-                            Utility.outputFile(output, arguments.get(Option.OUT));
-                        } else {
-                            Utility.outputScreen(output);
-                        }
+                boolean showTimings = arguments.hasOption(Option.TIMINGS);
+                Timings timings = Timings.start(operationName, showTimings);
+                try {
+                    return executeOperation(operation);
+                } finally {
+                    Timings.stop();
+                    if (showTimings) {
+                        this.err.println(timings.toJson());
                     }
                 }
             }
         }
+        this.out.flush();
         return 0;
     }
 
+    private int executeOperation(Operation operation) throws Exception {
+        if (operation.showHelp()) {
+            DimeTool.showHelp(operation, this.out);
+        } else {
+            String stdinOption = arguments.getStdinOption();
+            if (stdinOption != null) {
+                return executeRecords(stdinOption);
+            }
+            String output = Timings.time(Timings.EXECUTE, () -> DimeTool.executeLocked(operation));
+            if (output != null) {
+                Timings.run(Timings.OUTPUT, () -> {
+                    try (OutputSink sink = OutputSink.open(arguments, this.out, false)) {
+                        sink.write(output);
+                        sink.commit();
+                    }
+                });
+            }
+        }
+        this.out.flush();
+        return operation.hasFailed() ? -1 : 0;
+    }
+
+    // Record mode, the operation is executed once for every line read from stdin, with the line as the value of the option
+    // given as '-', and one line is written for every record (empty if the record failed). The exit status is non-zero if
+    // any record failed
+    private int executeRecords(String stdinOption) throws Exception {
+        BatchProcessor<RecordReader.Record> processor = BatchProcessor.fromArguments(arguments);
+        LongAdder failed = new LongAdder();
+        try (RecordReader reader = new RecordReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+             OutputSink output = OutputSink.open(arguments, this.out)) {
+            processor.process(reader, record -> {
+                Operation operation = Operation.fetchOperation(arguments.withValue(stdinOption, record.value));
+                Objects.requireNonNull(operation).setStreams(this.out, this.err);
+                operation.setInteractive(false);
+                try {
+                    String result = DimeTool.executeLocked(operation);
+                    if (operation.hasFailed()) {
+                        failed.increment();
+                    }
+                    return result != null ? result : "";
+                } catch (Exception e) {
+                    DimeTool.showErrorMessage(operation, "Line " + record.name + ": " + e.getMessage(), false);
+                    failed.increment();
+                    return "";
+                }
+            }, output, this.err);
+            output.commit();
+        }
+        return failed.sum() > 0 || processor.getFailed() > 0 ? -1 : 0;
+    }
+
+    private static String executeLocked(Operation operation) throws Exception {
+        if (operation.isDispatcher()) {
+            return operation.execute();
+        }
+        Lock lock = operation.isExclusive() ? DimeTool.globalState.writeLock() : DimeTool.globalState.readLock();
+        lock.lock();
+        try {
+            return operation.execute();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        DimeTool tool = null;
+        try {
+            tool = new DimeTool(args, out, err);
+            return tool.execute();
+        } catch (Exception e) {
+            Operation operation = tool != null ? tool.operation : null;
+            DimeTool.showErrorMessage(err, operation, e.getMessage(), true);
+            return -1;
+        } finally {
+            out.flush();
+            err.flush();
+        }
+    }
+
     /// HELP ///
 
     public static int showHelp(Operation operation, PrintStream stream) {
@@ -109,6 +201,12 @@ public class DimeTool {
                 }
             }
             stream.println("\n\tOptions may either specify the value directly, or specify a filename where the value will be read from.");
+            stream.println("\tPrefix a filename with '" + Arguments.FILE_PREFIX + "' to always read the value from that file.");
+            stream.println("\tAn option given as '-' reads one value per line from stdin, and the operation writes one line per value.");
+            stream.print("\n\t" + Option.OUT + "\t\t\t\tWrites output to a file, the file is replaced only when the operation completes.");
+            stream.print("\n\t" + Option.OUT_DIR + "\t\t\tWrites every output item to its own file in a directory, sharded by thumbprint prefix.");
+            stream.print("\n\t" + Option.FSYNC + "\t\t\tWhen written files are synced to disk: " + OutputSink.FSYNC_NONE + " (default), " + OutputSink.FSYNC_CLOSE + " or " + OutputSink.FSYNC_ALWAYS + ".");
+            stream.print("\n\t" + Option.TIMINGS + "\t\t\tPrints time and allocated bytes per execution phase as JSON to stderr.");
             stream.print("\n\t" + Option.HELP + "\t\t\t\tShows this help message and exits.\n");
         }
         stream.flush();
@@ -116,40 +214,48 @@ public class DimeTool {
     }
 
     public static void showErrorMessage(Operation operation, String message, boolean showHelp) {
-        System.err.println("[ERROR] " + message);
-        if (showHelp) {
-            System.err.println("");
-            showHelp(operation, System.err);
+        showErrorMessage(operation != null ? operation.getErrorStream() : System.err, operation, message, showHelp);
+    }
+
+    public static void showErrorMessage(PrintStream stream, Operation operation, String message, boolean showHelp) {
+        if (operation != null) {
+            operation.setFailed();
         }
+        stream.println("[ERROR] " + message);
+        if (showHelp && (operation == null || operation.isInteractive())) {
+            stream.println("");
+            showHelp(operation, stream);
+        }
+    }
+
+    // Held by in-process API calls, like by non-exclusive operations
+    static Lock sharedLock() {
+        return DimeTool.globalState.readLock();
+    }
+
+    // Held by long-running operations while changing global state, like by exclusive operations
+    static Lock exclusiveLock() {
+        return DimeTool.globalState.writeLock();
     }
 
+    private static final ReentrantReadWriteLock globalState = new ReentrantReadWriteLock();
+
     private final Arguments arguments;
+    private final PrintStream out;
+    private final PrintStream err;
+    private Operation operation;
 
     ///// MAIN /////
 
-    public static void registerOperations() {
-        Operation.registerOperation(KeyOperation.NAME, KeyOperation.class);
-        Operation.registerOperation(IirOperation.NAME, IirOperation.class);
-        Operation.registerOperation(IssueOperation.SELF_NAME, IssueOperation.class);
-        Operation.registerOperation(IssueOperation.ISSUE_NAME, IssueOperation.class);
-        Operation.registerOperation(VerifyOperation.NAME, VerifyOperation.class);
-        Operation.registerOperation(ThumbprintOperation.NAME, ThumbprintOperation.class);
-        Operation.registerOperation(CreateOperation.NAME, CreateOperation.class);
-        Operation.registerOperation(SignOperation.NAME, SignOperation.class);
-    }
-
     public static void main(String[] args) {
-        DimeTool.registerOperations();
-        DimeTool tool = null;
-        try {
-            tool = new DimeTool(args);
-            int status = tool.execute();
-            System.exit(status);
-        } catch (Exception e) {
-            Operation operation = tool != null ? Operation.fetchOperation(tool.arguments) : null;
-            DimeTool.showErrorMessage(operation, e.getMessage(), true);
-            System.exit(-1);
+        String socketPath = DimeClient.socketPath(args);
+        if (socketPath != null) {
+            Integer status = DimeClient.forward(socketPath, args);
+            if (status != null) {
+                System.exit(status);
+            }
         }
+        System.exit(DimeTool.run(args, System.out, System.err));
     }
 
 }
@@ -0,0 +1,166 @@
+//
+//  EnvelopeReader.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// Reads the items of a Dime envelope one at a time from a channel, so that an envelope of any size is read with memory
+// bounded by its largest item. The envelope is split into sections on ':', the first section is the envelope header
+// and a last section without components is the envelope signature. Records are named by the position of the item
+// within the envelope, starting at 1, and hold the item as it is encoded on its own, with the envelope header in front
+// of the section, so that they are imported as any other item.
+public class EnvelopeReader implements Iterator<RecordReader.Record>, Closeable {
+
+    ///// PUBLIC /////
+
+    public static final byte SECTION_DELIMITER = ':';
+    public static final byte COMPONENT_DELIMITER = '.';
+    public static final String ITEM_HEADER = ItemHeader.ENVELOPE_HEADER + (char) EnvelopeReader.SECTION_DELIMITER;
+
+    public EnvelopeReader(ReadableByteChannel channel) throws IOException {
+        this.channel = channel;
+        this.header = readSection();
+        if (this.header == null || !this.header.startsWith(ItemHeader.ENVELOPE_HEADER)) {
+            throw new IOException("Not a Dime envelope.");
+        }
+    }
+
+    // Section of an envelope for an item exported on its own, the header is removed
+    public static String toSection(String encodedItem) {
+        return encodedItem.startsWith(EnvelopeReader.ITEM_HEADER) ? encodedItem.substring(EnvelopeReader.ITEM_HEADER.length()) : encodedItem;
+    }
+
+    public static EnvelopeReader open(String source) throws IOException {
+        if (source == null || source.length() == 0) {
+            throw new IllegalArgumentException("Missing envelope source.");
+        }
+        if (source.equals(RecordReader.STDIN)) {
+            return new EnvelopeReader(Channels.newChannel(System.in));
+        }
+        return new EnvelopeReader(FileChannel.open(Path.of(source), StandardOpenOption.READ));
+    }
+
+    // The header section, with the envelope claims if the envelope is not anonymous
+    public String getHeader() {
+        return this.header;
+    }
+
+    public boolean isAnonymous() {
+        return this.header.indexOf(EnvelopeReader.COMPONENT_DELIMITER) < 0;
+    }
+
+    // Only known once all items have been read, null if the envelope is not signed
+    public String getSignature() {
+        return this.signature;
+    }
+
+    /// Iterator ///
+
+    @Override
+    public boolean hasNext() {
+        if (this.next == null && this.signature == null) {
+            try {
+                String section = readSection();
+                if (section != null && section.length() == 0) {
+                    throw new IOException("Invalid envelope, section " + (this.count + 2) + " is empty.");
+                } else if (section != null && section.indexOf(EnvelopeReader.COMPONENT_DELIMITER) < 0) {
+                    this.signature = section;
+                    if (readSection() != null) {
+                        throw new IOException("Invalid envelope, section " + (this.count + 2) + " is not an item.");
+                    }
+                } else if (section != null) {
+                    this.next = new RecordReader.Record(Long.toString(++this.count), EnvelopeReader.ITEM_HEADER + section);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return this.next != null;
+    }
+
+    @Override
+    public RecordReader.Record next() {
+        if (!hasNext()) { throw new NoSuchElementException(); }
+        RecordReader.Record record = this.next;
+        this.next = null;
+        return record;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    ///// PRIVATE /////
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(EnvelopeReader.BUFFER_SIZE).flip();
+    private final String header;
+    private byte[] section = new byte[EnvelopeReader.BUFFER_SIZE];
+    private boolean ended;
+    private long count;
+    private String signature;
+    private RecordReader.Record next;
+
+    // Returns null once the channel is exhausted. Only the section being read is held, whitespace around it (such as
+    // a trailing newline) is removed
+    private String readSection() throws IOException {
+        int length = 0;
+        boolean delimited = false;
+        while (!delimited) {
+            if (!this.buffer.hasRemaining()) {
+                if (this.ended || !fill()) { break; }
+            }
+            byte value = this.buffer.get();
+            if (value == EnvelopeReader.SECTION_DELIMITER) {
+                delimited = true;
+            } else if (length > 0 || value > ' ') {
+                if (length == this.section.length) {
+                    this.section = Arrays.copyOf(this.section, length * 2);
+                }
+                this.section[length++] = value;
+            }
+        }
+        while (length > 0 && this.section[length - 1] <= ' ') { length--; }
+        if (length == 0 && !delimited) {
+            return null;
+        }
+        return new String(this.section, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private boolean fill() throws IOException {
+        this.buffer.clear();
+        int read;
+        do {
+            read = this.channel.read(this.buffer);
+        } while (read == 0);
+        this.buffer.flip();
+        if (read < 0) {
+            this.ended = true;
+            return false;
+        }
+        return true;
+    }
+
+}
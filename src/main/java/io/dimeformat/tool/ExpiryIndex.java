@@ -0,0 +1,131 @@
+//
+//  ExpiryIndex.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Validity windows of scanned items, keyed by file path (or thumbprint for archive entries) together with the size and
+// modification time the item was read at. Persisted as a tab-separated file sorted by expiry date, items without an
+// expiry date last, so the file itself can be read from the top to find what expires first. Entries that were not seen
+// in the latest scan are dropped when saved.
+public class ExpiryIndex {
+
+    ///// PUBLIC /////
+
+    public static final long UNCHANGING = -1L; // Size and modification time of content-addressed entries
+
+    public static final class Entry {
+        public final String name;
+        public final String type;
+        public final Instant issuedAt;
+        public final Instant expiresAt;
+        final long size;
+        final long modified;
+        Entry(String name, long size, long modified, String type, Instant issuedAt, Instant expiresAt) {
+            this.name = name;
+            this.size = size;
+            this.modified = modified;
+            this.type = type;
+            this.issuedAt = issuedAt;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public ExpiryIndex(Path file) throws IOException {
+        this(file, OutputSink.FSYNC_NONE);
+    }
+
+    // The index is saved following the given --fsync policy
+    public ExpiryIndex(Path file, String fsync) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.fsync = fsync;
+        if (Files.isRegularFile(this.file)) {
+            load();
+        }
+    }
+
+    public Path getFile() {
+        return this.file;
+    }
+
+    // Returns the indexed entry if the item has not changed since it was indexed, and keeps it for the next save
+    public Entry lookup(String name, long size, long modified) {
+        Entry entry = this.entries.get(name);
+        if (entry != null && entry.size == size && entry.modified == modified) {
+            this.seen.put(name, entry);
+            return entry;
+        }
+        return null;
+    }
+
+    public Entry put(String name, long size, long modified, String type, Instant issuedAt, Instant expiresAt) {
+        Entry entry = new Entry(name, size, modified, type, issuedAt, expiresAt);
+        this.seen.put(name, entry);
+        return entry;
+    }
+
+    public void save() throws IOException {
+        List<Entry> sorted = new ArrayList<>(this.seen.values());
+        sorted.sort(Comparator.comparing((Entry entry) -> entry.expiresAt, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(entry -> entry.name));
+        OutputSink.writeFile(this.file, this.fsync, true, stream -> {
+            try (BufferedWriter lines = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8))) {
+                for (Entry entry: sorted) {
+                    lines.write(ExpiryIndex.format(entry.expiresAt) + "\t" + ExpiryIndex.format(entry.issuedAt) + "\t" + entry.type
+                            + "\t" + entry.size + "\t" + entry.modified + "\t" + entry.name);
+                    lines.write('\n');
+                }
+            }
+        });
+    }
+
+    ///// PRIVATE /////
+
+    private static final String NONE = "-";
+
+    private final Path file;
+    private final String fsync;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<String, Entry> seen = new ConcurrentHashMap<>();
+
+    private void load() throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(this.file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 6);
+                if (fields.length != 6) { continue; }
+                try {
+                    this.entries.put(fields[5], new Entry(fields[5], Long.parseLong(fields[3]), Long.parseLong(fields[4]), fields[2],
+                            ExpiryIndex.parse(fields[1]), ExpiryIndex.parse(fields[0])));
+                } catch (RuntimeException e) {
+                    /* ignore this, corrupt entries are scanned again */
+                }
+            }
+        }
+    }
+
+    private static String format(Instant instant) {
+        return instant != null ? instant.toString() : ExpiryIndex.NONE;
+    }
+
+    private static Instant parse(String value) {
+        return value.equals(ExpiryIndex.NONE) ? null : Instant.parse(value);
+    }
+
+}
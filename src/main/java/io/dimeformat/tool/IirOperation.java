@@ -46,18 +46,19 @@ public class IirOperation extends Operation {
             DimeTool.showErrorMessage(this, "Missing required key.", true);
             return null;
         }
-        Key key = Item.importFromEncoded(encodedKey);
+        Key key = Timings.time(Timings.IMPORT, () -> Item.importFromEncoded(encodedKey));
         String[] array = arguments.getArray(Option.CAP);
         IdentityCapability[] caps = null;
         if (array != null && array.length > 0) {
             caps = Arrays.stream(array).map(cap -> IdentityCapability.valueOf(cap.toUpperCase())).toArray(IdentityCapability[]::new);
         }
-        IdentityIssuingRequest iir = IdentityIssuingRequest.generateIIR(key, caps);
+        IdentityCapability[] capabilities = caps;
+        IdentityIssuingRequest iir = Timings.time(Timings.CRYPTO, () -> IdentityIssuingRequest.generateIIR(key, capabilities));
         if (arguments.hasOption(Option.LEGACY) && !iir.isLegacy()) {
             iir.convertToLegacy();
-            iir.sign(key);
+            Timings.run(Timings.CRYPTO, () -> iir.sign(key));
         }
-        return iir.exportToEncoded();
+        return Timings.time(Timings.EXPORT, iir::exportToEncoded);
     }
 
 }
@@ -35,15 +35,19 @@ public class IssueOperation extends Operation {
                 Collections.addAll(array,
                         new Option(Option.ALLOW_CAP, false, "List of capabilities that are allowed to be requested in the IIR, leave out for no limitation.", List.of("generic\t\t(default capability, generic use)", "identify\t(capability to identify, authenticated use)", "issue\t\t(capability to issue additional identities)")),
                         new Option(Option.AMB, false, "An ambit list that should be set in the issued identity."),
+                        new Option(Option.BATCH, false, "Directory with one IIR per file, or file with newline-delimited IIRs, to issue identities from, use '-' to read from stdin. Every identity is written as name<TAB>identity, where name is the file name or line number of its IIR, except with " + Option.OUT_DIR + "."),
                         new Option(Option.DAYS, false, "Number of days issued identity should be valid, leave out for no expiration date."),
                         new Option(Option.EXCLUDE_CHN, false, "Will skip including the trust chain in the issued identity."),
-                        new Option(Option.IIR, true, "Dime encoded IIR to use for identity issuing."),
-                        new Option(Option.ISSUER, true, "Dime encoded issuer identity."),
+                        new Option(Option.IIR, true, "Dime encoded IIR to use for identity issuing, not used with " + Option.BATCH + "."),
+                        new Option(Option.ISSUER, true, "Dime encoded issuer identity, or subject id (UUID) or thumbprint of an identity in the trust store."),
                         new Option(Option.KEY, true, "Dime encoded key to use when issuing the identity, this will be used to sign the identity."),
                         new Option(Option.MTD, false, "A method list that should be set in the issued identity."),
+                        new Option(Option.ORDER, false, "Order of issued identities when using " + Option.BATCH + ", defaults to input order.", List.of(BatchProcessor.ORDER_INPUT + "\t\t(same order as the input)", BatchProcessor.ORDER_COMPLETION + "\t(in order of completion)")),
                         new Option(Option.REQUIRE_CAP, false, "List of capabilities that are must be requested in the IIR, leave out for no limitation.", List.of("generic\t\t(default capability, generic use)", "identify\t(capability to identify, authenticated use)", "issue\t\t(capability to issue additional identities)")),
-                        new Option(Option.SUB, false, "The subject id (UUID) for the issued identity, a random UUID will be generated if omitted."),
-                        new Option(Option.SYS, false, "The system name that should be set in the issued identity, leave out to inherent system from issuer."));
+                        new Option(Option.SUB, false, "The subject id (UUID) for the issued identity, a random UUID will be generated if omitted, not used with " + Option.BATCH + "."),
+                        new Option(Option.SYS, false, "The system name that should be set in the issued identity, leave out to inherent system from issuer."),
+                        new Option(Option.TRUSTSTORE, false, "Trust store directory to load the issuer from."),
+                        new Option(Option.WORKERS, false, "Number of worker threads to use with " + Option.BATCH + ", defaults to number of processors."));
                 break;
             case IssueOperation.SELF_NAME:
                 Collections.addAll(array,
@@ -61,67 +65,163 @@ public class IssueOperation extends Operation {
         return array;
     }
 
+    @Override
+    public boolean isExclusive() {
+        return IssueOperation.ISSUE_NAME.equals(getName()); // Issuer is put into Dime.keyRing
+    }
+
     @Override
     public String execute() throws Exception {
         UUID subjectId = arguments.getUUID(Option.SUB);
         if (subjectId == null) {
             subjectId = UUID.randomUUID();
         }
-        long validFor = arguments.getValidFor(Option.DAYS, Dime.VALID_FOR_1_DAY);
-        String encodedKey = arguments.get(Option.KEY);
-        if (encodedKey == null) {
-            DimeTool.showErrorMessage(this, "Missing required option for key.", true);
-            return null;
-        }
-        Key issuerKey = Item.importFromEncoded(encodedKey);
-        String systemName = arguments.get(Option.SYS);
-        if (systemName == null ||systemName.length() == 0) {
-            DimeTool.showErrorMessage(this, "Missing required option for system name.", true);
-            return null;
-        }
-        String[] ambit = arguments.getArray(Option.AMB);
-        String[] methods = arguments.getArray(Option.MTD);
         Identity identity;
         if (arguments.getOperationName().equals(IssueOperation.SELF_NAME)) { // This is a self-issue
+            long validFor = arguments.getValidFor(Option.DAYS, Dime.VALID_FOR_1_DAY);
+            String encodedKey = arguments.get(Option.KEY);
+            if (encodedKey == null) {
+                DimeTool.showErrorMessage(this, "Missing required option for key.", true);
+                return null;
+            }
+            Key issuerKey = Timings.time(Timings.IMPORT, () -> Item.importFromEncoded(encodedKey));
+            String systemName = arguments.get(Option.SYS);
+            if (systemName == null ||systemName.length() == 0) {
+                DimeTool.showErrorMessage(this, "Missing required option for system name.", true);
+                return null;
+            }
+            String[] ambit = arguments.getArray(Option.AMB);
+            String[] methods = arguments.getArray(Option.MTD);
             IirOperation iirOperation = new IirOperation();
             iirOperation.arguments = arguments;
-            IdentityIssuingRequest iir = Item.importFromEncoded(iirOperation.execute());
-            identity = iir.selfIssueIdentity(subjectId, validFor, issuerKey, systemName, ambit, methods);
+            iirOperation.setStreams(getOutputStream(), getErrorStream());
+            String encodedIir = iirOperation.execute();
+            IdentityIssuingRequest iir = Timings.time(Timings.IMPORT, () -> Item.importFromEncoded(encodedIir));
+            UUID selfSubjectId = subjectId;
+            identity = Timings.time(Timings.CRYPTO, () -> iir.selfIssueIdentity(selfSubjectId, validFor, issuerKey, systemName, ambit, methods));
             if (arguments.hasOption(Option.LEGACY) && !identity.isLegacy()) {
                 identity.convertToLegacy();
-                identity.sign(identity, issuerKey, false);
+                Identity selfIdentity = identity;
+                Timings.run(Timings.CRYPTO, () -> selfIdentity.sign(selfIdentity, issuerKey, false));
             }
         } else { // This is a hierarchical issue
-            boolean includeChain = !arguments.hasOption(Option.EXCLUDE_CHN);
-            String[] allArray = arguments.getArray(Option.ALLOW_CAP);
-            IdentityCapability[] allCaps = null;
-            if (allArray != null && allArray.length > 0) {
-                allCaps = Arrays.stream(allArray).map(cap -> IdentityCapability.valueOf(cap.toUpperCase())).toArray(IdentityCapability[]::new);
-            }
-            String[] reqArray = arguments.getArray(Option.REQUIRE_CAP);
-            IdentityCapability[] reqCaps = null;
-            if (reqArray != null && reqArray.length > 0) {
-                reqCaps = Arrays.stream(reqArray).map(cap -> IdentityCapability.valueOf(cap.toUpperCase())).toArray(IdentityCapability[]::new);
+            Issuer issuer = createIssuer();
+            if (issuer == null) {
+                return null;
             }
-            String encodedIssuer = arguments.get(Option.ISSUER);
-            if (encodedIssuer == null) {
-                DimeTool.showErrorMessage(this, "Missing required option for issuer.", true);
+            if (arguments.hasOption(Option.BATCH)) {
+                if (arguments.hasOption(Option.SUB)) {
+                    DimeTool.showErrorMessage(this, "Option " + Option.SUB + " may not be used with " + Option.BATCH + ".", true);
+                    return null;
+                }
+                executeBatch(issuer);
                 return null;
             }
-            Identity issuerIdentity = Item.importFromEncoded(encodedIssuer);
-            Dime.keyRing.put(issuerIdentity);
             String encodedIir = arguments.get(Option.IIR);
             if (encodedIir == null) {
                 DimeTool.showErrorMessage(this, "Missing required option for iir.", true);
                 return null;
             }
-            IdentityIssuingRequest iir = Item.importFromEncoded(encodedIir);
-            if (allCaps == null && reqCaps == null) {
+            IdentityIssuingRequest iir = Timings.time(Timings.IMPORT, () -> Item.importFromEncoded(encodedIir));
+            identity = issuer.issue(iir, subjectId);
+        }
+
+        return Timings.time(Timings.EXPORT, identity::exportToEncoded);
+    }
+
+    // Issuer and issuing policy for hierarchical issuing, loaded once from the options given, returns null if a required
+    // option is missing
+    Issuer createIssuer() throws Exception {
+        long validFor = arguments.getValidFor(Option.DAYS, Dime.VALID_FOR_1_DAY);
+        String encodedKey = arguments.get(Option.KEY);
+        if (encodedKey == null) {
+            DimeTool.showErrorMessage(this, "Missing required option for key.", true);
+            return null;
+        }
+        Key issuerKey = Timings.time(Timings.IMPORT, () -> Item.importFromEncoded(encodedKey));
+        String systemName = arguments.get(Option.SYS);
+        if (systemName == null ||systemName.length() == 0) {
+            DimeTool.showErrorMessage(this, "Missing required option for system name.", true);
+            return null;
+        }
+        String[] ambit = arguments.getArray(Option.AMB);
+        String[] methods = arguments.getArray(Option.MTD);
+        boolean includeChain = !arguments.hasOption(Option.EXCLUDE_CHN);
+        String[] allArray = arguments.getArray(Option.ALLOW_CAP);
+        IdentityCapability[] allCaps = null;
+        if (allArray != null && allArray.length > 0) {
+            allCaps = Arrays.stream(allArray).map(cap -> IdentityCapability.valueOf(cap.toUpperCase())).toArray(IdentityCapability[]::new);
+        }
+        String[] reqArray = arguments.getArray(Option.REQUIRE_CAP);
+        IdentityCapability[] reqCaps = null;
+        if (reqArray != null && reqArray.length > 0) {
+            reqCaps = Arrays.stream(reqArray).map(cap -> IdentityCapability.valueOf(cap.toUpperCase())).toArray(IdentityCapability[]::new);
+        }
+        String encodedIssuer = arguments.get(Option.ISSUER);
+        if (encodedIssuer == null) {
+            DimeTool.showErrorMessage(this, "Missing required option for issuer.", true);
+            return null;
+        }
+        TrustStore store = TrustStore.open(arguments);
+        Identity storedIssuer = store != null ? store.resolve(encodedIssuer) : null;
+        Identity issuerIdentity = storedIssuer != null ? storedIssuer : Timings.time(Timings.IMPORT, () -> Item.importFromEncoded(encodedIssuer));
+        Dime.keyRing.put(issuerIdentity);
+        return new Issuer(validFor, issuerKey, issuerIdentity, includeChain, allCaps, reqCaps, systemName, ambit, methods);
+    }
+
+    ///// PRIVATE /////
+
+    static final class Issuer {
+
+        private final long validFor;
+        private final Key key;
+        private final Identity identity;
+        private final boolean includeChain;
+        private final IdentityCapability[] allowedCapabilities;
+        private final IdentityCapability[] requiredCapabilities;
+        private final String systemName;
+        private final String[] ambit;
+        private final String[] methods;
+
+        Issuer(long validFor, Key key, Identity identity, boolean includeChain, IdentityCapability[] allowedCapabilities, IdentityCapability[] requiredCapabilities, String systemName, String[] ambit, String[] methods) {
+            this.validFor = validFor;
+            this.key = key;
+            this.identity = identity;
+            this.includeChain = includeChain;
+            this.allowedCapabilities = allowedCapabilities;
+            this.requiredCapabilities = requiredCapabilities;
+            this.systemName = systemName;
+            this.ambit = ambit;
+            this.methods = methods;
+        }
+
+        Identity issue(IdentityIssuingRequest iir, UUID subjectId) throws Exception {
+            IdentityCapability[] allCaps = this.allowedCapabilities;
+            if (allCaps == null && this.requiredCapabilities == null) {
                 allCaps = iir.getCapabilities().toArray(new IdentityCapability[0]);
             }
-            identity = iir.issueIdentity(subjectId, validFor, issuerKey, issuerIdentity, includeChain, allCaps, reqCaps, systemName, ambit, methods);
+            IdentityCapability[] allowedCapabilities = allCaps;
+            return Timings.time(Timings.CRYPTO, () -> iir.issueIdentity(subjectId, this.validFor, this.key, this.identity, this.includeChain, allowedCapabilities, this.requiredCapabilities, this.systemName, this.ambit, this.methods));
         }
 
-        return identity.exportToEncoded();
     }
+
+    private void executeBatch(Issuer issuer) throws Exception {
+        BatchProcessor<RecordReader.Record> processor = BatchProcessor.fromArguments(arguments);
+        boolean named = !arguments.hasOption(Option.OUT_DIR); // Files in an output directory are named by thumbprint
+        try (RecordReader reader = RecordReader.open(arguments.get(Option.BATCH));
+             OutputSink output = OutputSink.open(arguments, getOutputStream())) {
+            process(processor, reader, record -> {
+                IdentityIssuingRequest iir = Timings.time(Timings.IMPORT, () -> Item.importFromEncoded(record.value));
+                Identity identity = issuer.issue(iir, UUID.randomUUID());
+                String encoded = Timings.time(Timings.EXPORT, identity::exportToEncoded);
+                return named ? record.name + "\t" + encoded : OutputSink.itemRecord(arguments, encoded, identity);
+            }, output);
+            output.commit();
+        }
+        if (processor.getFailed() > 0) {
+            getErrorStream().println("[ERROR] Failed to issue " + processor.getFailed() + " of " + processor.getProcessed() + " identities.");
+        }
+    }
+
 }
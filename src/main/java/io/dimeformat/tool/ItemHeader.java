@@ -0,0 +1,278 @@
+//
+//  ItemHeader.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import io.dimeformat.Envelope;
+import io.dimeformat.Item;
+import io.dimeformat.enums.Claim;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+// Item type and top-level claims of an encoded item, decoded without importing the item. Only the claims component is
+// base64 decoded and scanned, keys, signatures and payloads are left untouched and nothing is verified. Items that
+// cannot be decoded this way are imported through the library instead, only the claims needed by the tool are then
+// available.
+public final class ItemHeader {
+
+    ///// PUBLIC /////
+
+    public static final String ENVELOPE_HEADER = "Di";
+    public static final String CLAIM_ISSUED_AT = "iat";
+    public static final String CLAIM_EXPIRES_AT = "exp";
+
+    // Headers of all items in an encoded item or envelope, the envelope itself and its signature (a last section without
+    // components) are not included
+    public static List<ItemHeader> decode(String encoded) {
+        String[] components = encoded.trim().split(":");
+        List<ItemHeader> headers = new ArrayList<>();
+        boolean envelope = components[0].startsWith(ItemHeader.ENVELOPE_HEADER);
+        for (int i = envelope ? 1 : 0; i < components.length; i++) {
+            if (components[i].length() == 0) { continue; }
+            if (envelope && i > 1 && i == components.length - 1 && components[i].indexOf('.') < 0) { break; }
+            ItemHeader header = ItemHeader.decodeItem(components[i]);
+            if (header == null) {
+                return ItemHeader.importHeaders(encoded);
+            }
+            headers.add(header);
+        }
+        return headers;
+    }
+
+    public String getType() {
+        return this.type;
+    }
+
+    public String getClaim(String claim) {
+        return this.claims.get(claim);
+    }
+
+    // Values of a claim that holds a list of strings, or the single value of any other claim
+    public List<String> getClaimValues(String claim) {
+        List<String> values = this.lists.get(claim);
+        if (values != null) { return values; }
+        String value = this.claims.get(claim);
+        return value != null ? List.of(value) : List.of();
+    }
+
+    public Set<String> getClaimNames() {
+        Set<String> names = new HashSet<>(this.claims.keySet());
+        names.addAll(this.lists.keySet());
+        return Collections.unmodifiableSet(names);
+    }
+
+    public Instant getInstant(String claim) {
+        String value = this.claims.get(claim);
+        if (value == null || value.length() == 0) { return null; }
+        try {
+            return Instant.parse(value);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    public Instant getIssuedAt() {
+        return getInstant(ItemHeader.CLAIM_ISSUED_AT);
+    }
+
+    public Instant getExpiresAt() {
+        return getInstant(ItemHeader.CLAIM_EXPIRES_AT);
+    }
+
+    ///// PRIVATE /////
+
+    private static final List<Claim> IMPORTED_CLAIMS = List.of(Claim.UID, Claim.SUB, Claim.ISS, Claim.CTX, Claim.SYS, Claim.CAP, Claim.AMB, Claim.MTD, Claim.CMN);
+
+    private final String type;
+    private final Map<String, String> claims;
+    private final Map<String, List<String>> lists;
+
+    private ItemHeader(String type, Map<String, String> claims, Map<String, List<String>> lists) {
+        this.type = type;
+        this.claims = claims;
+        this.lists = lists;
+    }
+
+    private static ItemHeader decodeItem(String component) {
+        int first = component.indexOf('.');
+        if (first <= 0) { return null; }
+        int second = component.indexOf('.', first + 1);
+        String claims = component.substring(first + 1, second > 0 ? second : component.length());
+        try {
+            String json = new String(Base64.getUrlDecoder().decode(claims.replace('+', '-').replace('/', '_').replace("=", "")), StandardCharsets.UTF_8);
+            Map<String, List<String>> lists = new HashMap<>();
+            Map<String, String> map = ItemHeader.parseClaims(json, lists);
+            if (map == null) { return null; }
+            ItemHeader header = new ItemHeader(component.substring(0, first), map, lists);
+            if ((map.containsKey(ItemHeader.CLAIM_ISSUED_AT) && header.getIssuedAt() == null)
+                    || (map.containsKey(ItemHeader.CLAIM_EXPIRES_AT) && header.getExpiresAt() == null)) {
+                return null; // Unknown date format, let the library decode it
+            }
+            return header;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static List<ItemHeader> importHeaders(String encoded) {
+        try {
+            List<Item> items;
+            if (encoded.startsWith(ItemHeader.ENVELOPE_HEADER)) {
+                items = Envelope.importFromEncoded(encoded).getItems();
+            } else {
+                items = List.of(Item.importFromEncoded(encoded));
+            }
+            List<ItemHeader> headers = new ArrayList<>();
+            for (Item item: items) {
+                Map<String, String> claims = new HashMap<>();
+                Map<String, List<String>> lists = new HashMap<>();
+                if (item.getIssuedAt() != null) { claims.put(ItemHeader.CLAIM_ISSUED_AT, item.getIssuedAt().toString()); }
+                if (item.getExpiresAt() != null) { claims.put(ItemHeader.CLAIM_EXPIRES_AT, item.getExpiresAt().toString()); }
+                for (Claim claim: ItemHeader.IMPORTED_CLAIMS) {
+                    Object value;
+                    try {
+                        value = item.getClaim(claim);
+                    } catch (RuntimeException e) {
+                        continue; // Claim not supported by this item type
+                    }
+                    String name = claim.name().toLowerCase();
+                    if (value instanceof Collection) {
+                        List<String> values = new ArrayList<>();
+                        for (Object element: (Collection<?>) value) { values.add(element.toString().toLowerCase()); }
+                        lists.put(name, values);
+                    } else if (value != null) {
+                        claims.put(name, value.toString());
+                    }
+                }
+                headers.add(new ItemHeader(item.getHeader(), claims, lists));
+            }
+            return headers;
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Unable to decode item: " + e.getMessage(), e);
+        }
+    }
+
+    // Top-level string, number and literal members of a JSON object, and arrays of strings, other nested arrays and
+    // objects are skipped
+    private static Map<String, String> parseClaims(String json, Map<String, List<String>> lists) {
+        Map<String, String> claims = new HashMap<>();
+        int[] position = { ItemHeader.skipWhitespace(json, 0) };
+        if (position[0] >= json.length() || json.charAt(position[0]) != '{') { return null; }
+        position[0]++;
+        while (true) {
+            position[0] = ItemHeader.skipWhitespace(json, position[0]);
+            if (position[0] >= json.length()) { return null; }
+            char c = json.charAt(position[0]);
+            if (c == '}') { return claims; }
+            if (c == ',') { position[0]++; continue; }
+            if (c != '"') { return null; }
+            String key = ItemHeader.parseString(json, position);
+            position[0] = ItemHeader.skipWhitespace(json, position[0]);
+            if (key == null || position[0] >= json.length() || json.charAt(position[0]) != ':') { return null; }
+            position[0] = ItemHeader.skipWhitespace(json, position[0] + 1);
+            if (position[0] >= json.length()) { return null; }
+            c = json.charAt(position[0]);
+            if (c == '"') {
+                String value = ItemHeader.parseString(json, position);
+                if (value == null) { return null; }
+                claims.put(key, value);
+            } else if (c == '[' && ItemHeader.parseStrings(json, position, key, lists)) {
+                continue;
+            } else if (c == '{' || c == '[') {
+                if (!ItemHeader.skipNested(json, position)) { return null; }
+            } else {
+                int start = position[0];
+                while (position[0] < json.length() && ",}".indexOf(json.charAt(position[0])) < 0) { position[0]++; }
+                claims.put(key, json.substring(start, position[0]).trim());
+            }
+        }
+    }
+
+    private static int skipWhitespace(String json, int position) {
+        while (position < json.length() && Character.isWhitespace(json.charAt(position))) { position++; }
+        return position;
+    }
+
+    private static String parseString(String json, int[] position) {
+        StringBuilder string = new StringBuilder();
+        for (int i = position[0] + 1; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (c == '"') {
+                position[0] = i + 1;
+                return string.toString();
+            } else if (c == '\\' && i + 1 < json.length()) {
+                char escaped = json.charAt(++i);
+                switch (escaped) {
+                    case 'n': string.append('\n'); break;
+                    case 't': string.append('\t'); break;
+                    case 'r': string.append('\r'); break;
+                    case 'b': string.append('\b'); break;
+                    case 'f': string.append('\f'); break;
+                    case 'u':
+                        if (i + 4 >= json.length()) { return null; }
+                        string.append((char) Integer.parseInt(json.substring(i + 1, i + 5), 16));
+                        i += 4;
+                        break;
+                    default: string.append(escaped);
+                }
+            } else {
+                string.append(c);
+            }
+        }
+        return null;
+    }
+
+    // Leaves the position untouched if the array holds anything other than strings
+    private static boolean parseStrings(String json, int[] position, String key, Map<String, List<String>> lists) {
+        List<String> values = new ArrayList<>();
+        int[] current = { position[0] + 1 };
+        while (true) {
+            current[0] = ItemHeader.skipWhitespace(json, current[0]);
+            if (current[0] >= json.length()) { return false; }
+            char c = json.charAt(current[0]);
+            if (c == ']') {
+                position[0] = current[0] + 1;
+                lists.put(key, values);
+                return true;
+            } else if (c == ',') {
+                current[0]++;
+            } else if (c == '"') {
+                String value = ItemHeader.parseString(json, current);
+                if (value == null) { return false; }
+                values.add(value);
+            } else {
+                return false;
+            }
+        }
+    }
+
+    private static boolean skipNested(String json, int[] position) {
+        int depth = 0;
+        for (int i = position[0]; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (c == '"') {
+                int[] string = { i };
+                if (ItemHeader.parseString(json, string) == null) { return false; }
+                i = string[0] - 1;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                if (--depth == 0) {
+                    position[0] = i + 1;
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,241 @@
+//
+//  ItemStore.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+// Content-addressed store of Dime items, every item is kept once as objects/<first two characters>/<thumbprint>, so a
+// lookup by thumbprint is a single file access and identical items are stored once. Ingested source files are recorded
+// in an append-only journal (path, size, modification time, thumbprint), so unchanged files are never read or hashed
+// again. The journal is compacted when it holds more than twice as many lines as there are sources. Several processes
+// may ingest into the same store, so lines are appended in batches and the journal compacted under a file lock.
+public final class ItemStore implements Closeable {
+
+    ///// PUBLIC /////
+
+    public static final class Source {
+        public final long size;
+        public final long modified;
+        public final String thumbprint;
+        Source(long size, long modified, String thumbprint) {
+            this.size = size;
+            this.modified = modified;
+            this.thumbprint = thumbprint;
+        }
+    }
+
+    public ItemStore(Path directory) throws IOException {
+        this(directory, OutputSink.FSYNC_NONE, false);
+    }
+
+    // Objects and the compacted journal are written following the given --fsync policy
+    public ItemStore(Path directory, String fsync) throws IOException {
+        this(directory, fsync, false);
+    }
+
+    // Opens an existing store for lookups only, the source journal is neither read nor written and nothing is created
+    public static ItemStore openReadOnly(Path directory) throws IOException {
+        return new ItemStore(directory, OutputSink.FSYNC_NONE, true);
+    }
+
+    public Path getDirectory() {
+        return this.directory;
+    }
+
+    /// Objects ///
+
+    public Path objectPath(String thumbprint) {
+        if (thumbprint.length() < 3 || thumbprint.indexOf('/') >= 0 || thumbprint.indexOf('\\') >= 0 || thumbprint.startsWith(".")) {
+            throw new IllegalArgumentException("Invalid thumbprint: " + thumbprint);
+        }
+        return this.objects.resolve(thumbprint.substring(0, 2)).resolve(thumbprint);
+    }
+
+    public String get(String thumbprint) throws IOException {
+        Path path = objectPath(thumbprint);
+        return Files.isRegularFile(path) ? Utility.readFile(path.toFile()) : null;
+    }
+
+    // Stores the encoded item under its thumbprint, returns false if it was already stored. An object is never replaced,
+    // if another thread or process stores the same item first, that copy is kept
+    public boolean put(String thumbprint, String encoded) throws IOException {
+        checkWritable();
+        Path path = objectPath(thumbprint);
+        if (Files.exists(path)) {
+            return false;
+        }
+        Files.createDirectories(path.getParent());
+        byte[] bytes = encoded.getBytes(StandardCharsets.UTF_8);
+        return OutputSink.writeFile(path, this.fsync, false, stream -> stream.write(bytes));
+    }
+
+    // Thumbprints of all stored items, in no particular order
+    public Stream<String> thumbprints() throws IOException {
+        return Files.walk(this.objects, 2)
+                .filter(path -> path.getNameCount() == this.objects.getNameCount() + 2 && Files.isRegularFile(path))
+                .map(path -> path.getFileName().toString())
+                .filter(name -> !name.startsWith(".") && !name.endsWith(".tmp"));
+    }
+
+    /// Sources ///
+
+    // Returns the recorded source if the file has not changed since it was ingested
+    public Source unchanged(Path file, BasicFileAttributes attributes) {
+        Source source = this.sources.get(ItemStore.sourceKey(file));
+        if (source != null && source.size == attributes.size() && source.modified == attributes.lastModifiedTime().toMillis()) {
+            return source;
+        }
+        return null;
+    }
+
+    public void record(Path file, BasicFileAttributes attributes, String thumbprint) throws IOException {
+        checkWritable();
+        String key = ItemStore.sourceKey(file);
+        Source source = new Source(attributes.size(), attributes.lastModifiedTime().toMillis(), thumbprint);
+        synchronized (this.pending) {
+            this.sources.put(key, source);
+            this.pending.append(key).append('\t').append(source.size).append('\t').append(source.modified).append('\t').append(thumbprint).append('\n');
+            this.journalLines++;
+            if (this.pending.length() >= ItemStore.APPEND_SIZE) {
+                append();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.readOnly) { return; }
+        synchronized (this.pending) {
+            append();
+            if (this.journalLines > 2L * this.sources.size()) {
+                compact();
+            }
+        }
+    }
+
+    ///// PRIVATE /////
+
+    private static final String OBJECTS_DIRECTORY = "objects";
+    private static final String SOURCES_FILE = "sources";
+    private static final String LOCK_FILE = "sources.lock";
+    private static final int APPEND_SIZE = 1 << 16;
+    private static final Object journals = new Object(); // File locks are held by the process, stores in it take turns
+
+    private interface JournalUpdate {
+        void run() throws IOException;
+    }
+
+    private final Path directory;
+    private final Path objects;
+    private final Path journal;
+    private final String fsync;
+    private final Map<String, Source> sources = new ConcurrentHashMap<>();
+    private final StringBuilder pending = new StringBuilder();
+    private final boolean readOnly;
+    private long journalLines;
+
+    private ItemStore(Path directory, String fsync, boolean readOnly) throws IOException {
+        this.directory = directory.toAbsolutePath().normalize();
+        this.objects = this.directory.resolve(ItemStore.OBJECTS_DIRECTORY);
+        this.journal = this.directory.resolve(ItemStore.SOURCES_FILE);
+        this.fsync = fsync;
+        this.readOnly = readOnly;
+        if (readOnly) {
+            if (!Files.isDirectory(this.objects)) {
+                throw new NoSuchFileException(this.directory.toString(), null, "Not an item store");
+            }
+            return;
+        }
+        Files.createDirectories(this.objects);
+        this.journalLines = ItemStore.readJournal(this.journal, this.sources);
+    }
+
+    // Reads the journal into the map, later lines replace earlier lines for the same source. Returns the number of lines
+    private static long readJournal(Path journal, Map<String, Source> sources) throws IOException {
+        if (!Files.isRegularFile(journal)) { return 0L; }
+        long count = 0L;
+        try (BufferedReader lines = Files.newBufferedReader(journal, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                String[] fields = line.split("\t");
+                if (fields.length != 4) { continue; } // Incomplete last line after an interrupted run
+                try {
+                    sources.put(fields[0], new Source(Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[3]));
+                    count++;
+                } catch (NumberFormatException e) {
+                    /* ignore this, corrupt line, the file is ingested again */
+                }
+            }
+        }
+        return count;
+    }
+
+    private void locked(JournalUpdate update) throws IOException {
+        synchronized (ItemStore.journals) {
+            try (FileChannel channel = FileChannel.open(this.directory.resolve(ItemStore.LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock ignored = channel.lock()) {
+                update.run();
+            }
+        }
+    }
+
+    // A single append of whole lines, so lines appended by other processes are not interleaved with these
+    private void append() throws IOException {
+        if (this.pending.length() == 0) { return; }
+        ByteBuffer bytes = ByteBuffer.wrap(this.pending.toString().getBytes(StandardCharsets.UTF_8));
+        this.pending.setLength(0);
+        locked(() -> {
+            try (FileChannel channel = FileChannel.open(this.journal, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+            }
+        });
+    }
+
+    private void checkWritable() {
+        if (this.readOnly) {
+            throw new IllegalStateException("Item store is opened read-only: " + this.directory);
+        }
+    }
+
+    private static String sourceKey(Path file) {
+        return file.toAbsolutePath().normalize().toString();
+    }
+
+    // Rewritten from the journal as it is on disk, not from the sources read by this store, so that lines appended by
+    // other processes are kept
+    private void compact() throws IOException {
+        locked(() -> {
+            Map<String, Source> sources = new LinkedHashMap<>();
+            ItemStore.readJournal(this.journal, sources);
+            OutputSink.writeFile(this.journal, this.fsync, true, stream -> {
+                try (BufferedWriter lines = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8))) {
+                    for (Map.Entry<String, Source> entry: sources.entrySet()) {
+                        Source source = entry.getValue();
+                        lines.write(entry.getKey() + "\t" + source.size + "\t" + source.modified + "\t" + source.thumbprint + "\n");
+                    }
+                }
+            });
+            this.journalLines = sources.size();
+        });
+    }
+
+}
@@ -13,6 +13,7 @@ import io.dimeformat.Dime;
 import io.dimeformat.Key;
 import io.dimeformat.enums.KeyCapability;
 import java.util.*;
+import java.util.stream.LongStream;
 import static java.util.stream.Collectors.toList;
 
 public class KeyOperation extends Operation {
@@ -29,10 +30,12 @@ public class KeyOperation extends Operation {
         ArrayList<Option> array = new ArrayList<>();
         Collections.addAll(array,
                 new Option(Option.CAP, true, "The capability of the generated key, space separated list.", List.of("encrypt\t\t(Encryption capability)", "exchange\t(Key exchange/agreement capability)", "sign\t\t(Digital signature capability)")),
+                new Option(Option.COUNT, false, "Number of keys to generate in parallel, one encoded key per line is written as they finish."),
                 new Option(Option.CRYPTO_SUITE, false, "Name of the cryptographic suite to use, omit to use default suite."),
                 new Option(Option.CTX, false, "The context to set in the generated key."),
                 new Option(Option.DAYS, false, "Number of days generated key should be valid, leave out for no expiration date."),
-                new Option(Option.ISS, false, "The identifier (UUID) of the issuer of the key."));
+                new Option(Option.ISS, false, "The identifier (UUID) of the issuer of the key."),
+                new Option(Option.WORKERS, false, "Number of worker threads to use with " + Option.COUNT + ", defaults to number of processors."));
         return array;
     }
 
@@ -44,12 +47,43 @@ public class KeyOperation extends Operation {
         long validFor = arguments.getValidFor(Option.DAYS, Dime.VALID_FOR_1_DAY);
         UUID issuerId = arguments.getUUID(Option.ISS);
         String context = arguments.get(Option.CTX);
-        String suite = arguments.get(Option.CRYPTO_SUITE) == null || arguments.get(Option.CRYPTO_SUITE).length() == 0 ? Dime.crypto.getDefaultSuiteName() : arguments.get(Option.CRYPTO_SUITE);
-        Key key = Key.generateKey(capList, validFor, issuerId, context, suite);
+        String suite = arguments.get(Option.CRYPTO_SUITE);
+        if (suite == null || suite.length() == 0) {
+            suite = Dime.crypto.getDefaultSuiteName();
+        }
+        if (arguments.hasOption(Option.COUNT)) {
+            executeBulk(capList, validFor, issuerId, context, suite);
+            return null;
+        }
+        String keySuite = suite;
+        Key key = Timings.time(Timings.CRYPTO, () -> KeyPool.take(capList, validFor, issuerId, context, keySuite));
         if (arguments.hasOption(Option.LEGACY)) {
             key.convertToLegacy();
         }
-        return key.exportToEncoded();
+        return Timings.time(Timings.EXPORT, key::exportToEncoded);
+    }
+
+    ///// PRIVATE /////
+
+    private void executeBulk(List<KeyCapability> capList, long validFor, UUID issuerId, String context, String suite) throws Exception {
+        long count = arguments.getLong(Option.COUNT, 1L);
+        if (count < 1) {
+            DimeTool.showErrorMessage(this, "Invalid value for option: " + Option.COUNT + ".", true);
+            return;
+        }
+        boolean legacy = arguments.hasOption(Option.LEGACY);
+        BatchProcessor<Long> processor = BatchProcessor.fromArguments(arguments, false);
+        Iterator<Long> sequence = LongStream.rangeClosed(1, count).iterator();
+        try (OutputSink output = OutputSink.open(arguments, getOutputStream())) {
+            process(processor, sequence, index -> {
+                Key key = Timings.time(Timings.CRYPTO, () -> Key.generateKey(capList, validFor, issuerId, context, suite));
+                if (legacy) {
+                    key.convertToLegacy();
+                }
+                return Timings.time(Timings.EXPORT, key::exportToEncoded);
+            }, output);
+            output.commit();
+        }
     }
 
 }
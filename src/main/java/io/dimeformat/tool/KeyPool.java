@@ -0,0 +1,161 @@
+//
+//  KeyPool.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import io.dimeformat.Key;
+import io.dimeformat.enums.KeyCapability;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+public class KeyPool {
+
+    ///// PUBLIC /////
+
+    public static final long MAX_AGE_SECONDS = 60L;
+    public static final long IDLE_SECONDS = 60L;
+    public static final int MAX_POOLS = 16;
+
+    /// Pool management ///
+
+    public static void setPoolSize(int size) {
+        KeyPool.poolSize = Math.max(0, size);
+    }
+
+    public static int getPoolSize() {
+        return KeyPool.poolSize;
+    }
+
+    public static Key take(List<KeyCapability> capabilities, long validFor, UUID issuerId, String context, String suite) throws Exception {
+        if (KeyPool.poolSize == 0) {
+            return Key.generateKey(capabilities, validFor, issuerId, context, suite);
+        }
+        String spec = capabilities + "|" + validFor + "|" + issuerId + "|" + context + "|" + suite;
+        KeyPool pool = KeyPool.pools.get(spec);
+        if (pool == null) {
+            pool = KeyPool.pools.computeIfAbsent(spec, s -> new KeyPool(s, capabilities, validFor, issuerId, context, suite));
+            KeyPool.evict();
+        }
+        return pool.take();
+    }
+
+    ///// PRIVATE /////
+
+    private static final Map<String, KeyPool> pools = new ConcurrentHashMap<>();
+    private static volatile int poolSize = 0;
+    private static final long FULL_POLL_MILLIS = 1000L;
+
+    private static final class Entry {
+        final Key key;
+        final long createdAt;
+        Entry(Key key) {
+            this.key = key;
+            this.createdAt = System.nanoTime();
+        }
+        boolean isStale() {
+            return System.nanoTime() - this.createdAt > TimeUnit.SECONDS.toNanos(KeyPool.MAX_AGE_SECONDS);
+        }
+    }
+
+    private final String spec;
+    private final List<KeyCapability> capabilities;
+    private final long validFor;
+    private final UUID issuerId;
+    private final String context;
+    private final String suite;
+    private final BlockingQueue<Entry> queue;
+    private final Thread filler;
+    private volatile long lastUsed = System.nanoTime();
+
+    // Pools are kept for distinct key specifications, so that a long-running process does not keep a filler thread for
+    // every specification it has seen, a pool is retired when idle and the least recently used pool is retired when
+    // there are too many
+    private static void evict() {
+        while (KeyPool.pools.size() > KeyPool.MAX_POOLS) {
+            KeyPool oldest = null;
+            for (KeyPool pool: KeyPool.pools.values()) {
+                if (oldest == null || pool.lastUsed < oldest.lastUsed) { oldest = pool; }
+            }
+            if (oldest == null) { return; }
+            oldest.retire();
+        }
+    }
+
+    private KeyPool(String spec, List<KeyCapability> capabilities, long validFor, UUID issuerId, String context, String suite) {
+        this.spec = spec;
+        this.capabilities = List.copyOf(capabilities);
+        this.validFor = validFor;
+        this.issuerId = issuerId;
+        this.context = context;
+        this.suite = suite;
+        this.queue = new ArrayBlockingQueue<>(KeyPool.poolSize);
+        this.filler = new Thread(null, this::fill, "dimetool-keypool", 0, false);
+        this.filler.setDaemon(true);
+        this.filler.start();
+    }
+
+    private void retire() {
+        KeyPool.pools.remove(this.spec, this);
+        this.filler.interrupt();
+        this.queue.clear();
+    }
+
+    private boolean isIdle() {
+        return System.nanoTime() - this.lastUsed > TimeUnit.SECONDS.toNanos(KeyPool.IDLE_SECONDS);
+    }
+
+    private Key take() throws Exception {
+        this.lastUsed = System.nanoTime();
+        Entry entry;
+        while ((entry = this.queue.poll()) != null) {
+            if (!entry.isStale()) {
+                return entry.key;
+            }
+        }
+        return generate();
+    }
+
+    private Key generate() throws Exception {
+        return Key.generateKey(this.capabilities, this.validFor, this.issuerId, this.context, this.suite);
+    }
+
+    // Keys are generated until the queue is full, stale keys are discarded from the head of the queue (the oldest) so
+    // that they are replaced, and the pool retires itself once it has not been used for a while
+    private void fill() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (isIdle()) {
+                    retire();
+                    return;
+                }
+                Entry oldest = this.queue.peek();
+                if (oldest != null && oldest.isStale()) {
+                    this.queue.remove(oldest);
+                } else if (this.queue.remainingCapacity() > 0) {
+                    this.queue.offer(new Entry(generate()));
+                } else {
+                    Thread.sleep(KeyPool.FULL_POLL_MILLIS);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            /* ignore this, keys will be generated on demand */
+        } finally {
+            KeyPool.pools.remove(this.spec, this); // A later take starts a new pool
+        }
+    }
+
+}
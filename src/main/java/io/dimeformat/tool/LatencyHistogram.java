@@ -0,0 +1,86 @@
+//
+//  LatencyHistogram.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+// Log-linear histogram of nanosecond latencies. Values below 64 are counted exactly, larger values in 32 linear buckets
+// per power of two, so any reported percentile is within about 3% of the recorded value. Not thread-safe, every thread
+// records into its own histogram and they are merged afterwards.
+public final class LatencyHistogram {
+
+    ///// PUBLIC /////
+
+    public void record(long nanos) {
+        long value = Math.max(0L, nanos);
+        this.counts[LatencyHistogram.index(value)]++;
+        this.count++;
+        this.total += value;
+        if (value > this.max) { this.max = value; }
+    }
+
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < this.counts.length; i++) {
+            this.counts[i] += other.counts[i];
+        }
+        this.count += other.count;
+        this.total += other.total;
+        this.max = Math.max(this.max, other.max);
+    }
+
+    public long getCount() {
+        return this.count;
+    }
+
+    public long getMax() {
+        return this.max;
+    }
+
+    public double getMean() {
+        return this.count > 0 ? (double) this.total / this.count : 0.0;
+    }
+
+    // Highest value of the bucket that holds the given percentile (0-100), capped at the largest recorded value
+    public long getPercentile(double percentile) {
+        if (this.count == 0) { return 0L; }
+        long rank = Math.max(1L, (long) Math.ceil(this.count * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < this.counts.length; i++) {
+            seen += this.counts[i];
+            if (seen >= rank) {
+                return Math.min(LatencyHistogram.highest(i), this.max);
+            }
+        }
+        return this.max;
+    }
+
+    ///// PRIVATE /////
+
+    private static final int EXACT = 64;
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << LatencyHistogram.SUB_BITS;
+
+    private final long[] counts = new long[LatencyHistogram.EXACT + 64 * LatencyHistogram.SUB_BUCKETS];
+    private long count;
+    private long total;
+    private long max;
+
+    private static int index(long value) {
+        if (value < LatencyHistogram.EXACT) { return (int) value; }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - LatencyHistogram.SUB_BITS;
+        return shift * LatencyHistogram.SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    private static long highest(int index) {
+        if (index < LatencyHistogram.EXACT) { return index; }
+        int shift = index / LatencyHistogram.SUB_BUCKETS - 1;
+        long mantissa = index - shift * LatencyHistogram.SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+}
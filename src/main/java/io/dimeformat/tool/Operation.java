@@ -9,29 +9,44 @@
 //
 package io.dimeformat.tool;
 
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Objects;
 
 public abstract class Operation {
 
-    public static void registerOperation(String name, Class<? extends Operation> operationType) {
-        if (Operation.operations == null) {
-            Operation.operations = new HashMap<>();
-        }
-        Operation.operations.put(name, operationType);
-    }
+    // Operation names in the order they are listed in help. Names are compile-time constants, so listing them does not load
+    // any operation class.
+    public static final List<String> OPERATION_NAMES = List.of(
+            KeyOperation.NAME,
+            IirOperation.NAME,
+            IssueOperation.SELF_NAME,
+            IssueOperation.ISSUE_NAME,
+            VerifyOperation.NAME,
+            ThumbprintOperation.NAME,
+            CreateOperation.NAME,
+            SignOperation.NAME,
+            ConvertOperation.NAME,
+            TrustOperation.NAME,
+            StoreOperation.NAME,
+            ArchiveOperation.PACK_NAME,
+            ArchiveOperation.UNPACK_NAME,
+            ScanOperation.NAME,
+            QueryOperation.NAME,
+            WatchOperation.NAME,
+            RunOperation.NAME,
+            BenchOperation.NAME,
+            ServeOperation.NAME);
 
     public static List<Operation> allOperations() {
-        if (operations != null) {
-            List<Operation> list = new ArrayList<>();
-            for (String name: operations.keySet()) {
-                list.add(Operation.fetchOperation(name));
-            }
-            return list;
+        List<Operation> list = new ArrayList<>();
+        for (String name: Operation.OPERATION_NAMES) {
+            list.add(Operation.fetchOperation(name));
         }
-        return null;
+        return list;
     }
 
     public static Operation fetchOperation(Arguments arguments) {
@@ -43,17 +58,38 @@ public abstract class Operation {
     }
 
     private static Operation fetchOperation(String name) {
-        Class<? extends Operation> operationType = Operation.operations.get(name);
-        if (operationType != null) {
-            try {
-                Operation operation = Objects.requireNonNull(operationType).getDeclaredConstructor().newInstance();
-                operation.setName(name);
-                return operation;
-            } catch (Exception e) {
-                /* ignore this */
-            }
+        if (name == null) { return null; }
+        Operation operation = Operation.createOperation(name);
+        if (operation != null) {
+            operation.setName(name);
+        }
+        return operation;
+    }
+
+    // Static operation table, an operation class (and the crypto classes it uses) is only loaded once it is requested
+    private static Operation createOperation(String name) {
+        switch (name) {
+            case KeyOperation.NAME: return new KeyOperation();
+            case IirOperation.NAME: return new IirOperation();
+            case IssueOperation.SELF_NAME:
+            case IssueOperation.ISSUE_NAME: return new IssueOperation();
+            case VerifyOperation.NAME: return new VerifyOperation();
+            case ThumbprintOperation.NAME: return new ThumbprintOperation();
+            case CreateOperation.NAME: return new CreateOperation();
+            case SignOperation.NAME: return new SignOperation();
+            case ConvertOperation.NAME: return new ConvertOperation();
+            case TrustOperation.NAME: return new TrustOperation();
+            case StoreOperation.NAME: return new StoreOperation();
+            case ArchiveOperation.PACK_NAME:
+            case ArchiveOperation.UNPACK_NAME: return new ArchiveOperation();
+            case ScanOperation.NAME: return new ScanOperation();
+            case QueryOperation.NAME: return new QueryOperation();
+            case WatchOperation.NAME: return new WatchOperation();
+            case RunOperation.NAME: return new RunOperation();
+            case BenchOperation.NAME: return new BenchOperation();
+            case ServeOperation.NAME: return new ServeOperation();
+            default: return null;
         }
-        return null;
     }
 
     public String getName() {
@@ -77,7 +113,57 @@ public abstract class Operation {
         return this.arguments.hasOption(Option.HELP);
     }
 
+    public boolean isExclusive() {
+        return false;
+    }
+
+    // An operation that runs other operations (serve, run) takes no lock itself, every operation it runs takes its own.
+    // Holding the shared lock while waiting for them would block any exclusive operation among them forever
+    public boolean isDispatcher() {
+        return false;
+    }
+
+    // An operation that reported an error, or had records of a batch fail, exits with a non-zero status
+    public boolean hasFailed() {
+        return this.failed;
+    }
+
+    protected void setFailed() {
+        this.failed = true;
+    }
+
+    public boolean isInteractive() {
+        return this.interactive;
+    }
+
+    protected void setInteractive(boolean interactive) {
+        this.interactive = interactive;
+    }
+
+    public PrintStream getOutputStream() {
+        return this.outputStream;
+    }
+
+    public PrintStream getErrorStream() {
+        return this.errorStream;
+    }
+
+    protected void setStreams(PrintStream outputStream, PrintStream errorStream) {
+        this.outputStream = outputStream;
+        this.errorStream = errorStream;
+    }
+
+    // Processes a batch, the operation fails if any of its records fail
+    protected <T> void process(BatchProcessor<T> processor, Iterator<T> records, BatchProcessor.Task<T> task, Writer output) throws IOException, InterruptedException {
+        processor.process(records, task, output, getErrorStream());
+        if (processor.getFailed() > 0) {
+            setFailed();
+        }
+    }
 
-    private static HashMap<String, Class<? extends Operation>> operations;
+    private boolean interactive = true;
+    private volatile boolean failed = false;
+    private PrintStream outputStream = System.out;
+    private PrintStream errorStream = System.err;
 
 }
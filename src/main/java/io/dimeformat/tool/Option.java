@@ -10,37 +10,80 @@
 package io.dimeformat.tool;
 
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Option {
 
+    // Options declared with path(...) take a path as value, which is used as is and never read as a file reference
+    private static final Set<String> paths = ConcurrentHashMap.newKeySet();
+
     public static final String ALLOW_CAP    = "--allowcap";
     public static final String AMB          = "--amb";
+    public static final String ARCHIVE      = Option.path("--archive");
+    public static final String BATCH        = Option.path("--batch");
+    public static final String CACHE        = Option.path("--cache");
+    public static final String CACHE_SIZE   = "--cachesize";
     public static final String CAP          = "--cap";
+    public static final String CHUNK        = "--chunk";
+    public static final String CHUNKS       = "--chunks";
+    public static final String CLAIM        = "--claim";
+    public static final String COUNT        = "--count";
     public static final String CRYPTO_SUITE = "--suite";
     public static final String CTX          = "--ctx";
     public static final String DAYS         = "--days";
+    public static final String DEPTH        = "--depth";
+    public static final String DURATION     = "--duration";
+    public static final String ENVELOPE     = Option.path("--envelope");
     public static final String EXCLUDE_CHN  = "--excludechain";
+    public static final String FSYNC        = "--fsync";
     public static final String GRACE_PERIOD = "--grace";
     public static final String HELP         = "--help";
     public static final String IIR          = "--iir";
+    public static final String INDEX        = Option.path("--index");
+    public static final String IN_PLACE     = "--inplace";
+    public static final String INGEST       = Option.path("--ingest");
     public static final String ISS          = "--iss";
     public static final String ISSUER       = "--issuer";
     public static final String ITEM         = "--item";
+    public static final String JSON         = Option.path("--json");
     public static final String KEY          = "--key";
 
     public static final String LEGACY       = "--legacy";
+    public static final String LOOKUP       = "--lookup";
     public static final String MIM          = "--mim";
     public static final String MTD          = "--mtd";
-    public static final String OUT          = "--out";
+    public static final String OPS          = "--ops";
+    public static final String ORDER        = "--order";
+    public static final String OUT          = Option.path("--out");
+    public static final String OUT_DIR      = Option.path("--outdir");
     public static final String PAYLOAD      = "--payload";
+    public static final String POOL         = "--pool";
+    public static final String QUEUE        = "--queue";
+    public static final String RATE         = "--rate";
+    public static final String REASSEMBLE   = Option.path("--reassemble");
     public static final String REQUIRE_CAP  = "--requirecap";
+    public static final String RESIGN       = "--resign";
+    public static final String SCRIPT       = Option.path("--script");
     public static final String SET_DATE     = "--setdate";
+    public static final String SOCKET       = Option.path("--socket");
+    public static final String SPOOL        = Option.path("--spool");
+    public static final String STORE        = Option.path("--store");
     public static final String SUB          = "--sub";
     public static final String SUITES       = "--suites";
     public static final String SYS          = "--sys";
+    public static final String TIMINGS      = "--timings";
+    public static final String TO           = "--to";
+    public static final String TRUSTSTORE   = Option.path("--truststore");
     public static final String TYPE         = "--type";
     public static final String VERIFIER     = "--verifier";
     public static final String VERSION      = "--version";
+    public static final String WARMUP       = "--warmup";
+    public static final String WORKERS      = "--workers";
+
+    public static boolean isPath(String name) {
+        return Option.paths.contains(name);
+    }
 
     public final String name;
     public final boolean required;
@@ -59,4 +102,11 @@ public class Option {
         this.values = values;
     }
 
+    ///// PRIVATE /////
+
+    private static String path(String name) {
+        Option.paths.add(name);
+        return name;
+    }
+
 }
@@ -0,0 +1,459 @@
+//
+//  OutputSink.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import io.dimeformat.Item;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// Destination of operation output, every line written is one record. Output is either written to the screen through a
+// large buffer, to a single file (--out), or to one file per item in a directory sharded by thumbprint prefix
+// (--outdir). Files are written to a temporary file and renamed into place, so nothing partial is left behind if the
+// output is not committed. Batch output is handed over to a writer thread, so producers do not wait on disk.
+public abstract class OutputSink extends Writer {
+
+    ///// PUBLIC /////
+
+    public static final String FSYNC_NONE = "none";
+    public static final String FSYNC_CLOSE = "close";
+    public static final String FSYNC_ALWAYS = "always";
+
+    public static OutputSink open(Arguments arguments, PrintStream screen) throws IOException {
+        return OutputSink.open(arguments, screen, true);
+    }
+
+    public static OutputSink open(Arguments arguments, PrintStream screen, boolean asynchronous) throws IOException {
+        String fsync = OutputSink.fsync(arguments);
+        String directory = arguments.get(Option.OUT_DIR);
+        String file = arguments.get(Option.OUT);
+        OutputSink sink;
+        if (directory != null && directory.length() > 0) {
+            sink = new DirectorySink(Path.of(directory), fsync);
+        } else if (file != null && file.length() > 0) {
+            sink = new FileSink(Path.of(file), fsync);
+        } else {
+            sink = new StreamSink(screen);
+        }
+        return asynchronous ? new AsyncSink(sink) : sink;
+    }
+
+    // Returns the record to write for an output item. Written to a directory, the record also carries the thumbprint of
+    // the item, so that it is computed by the worker producing the item and not by the thread writing the output. The
+    // item is imported if it is not given
+    public static String itemRecord(Arguments arguments, String encoded) throws Exception {
+        return OutputSink.itemRecord(arguments, encoded, (Item) null);
+    }
+
+    public static String itemRecord(Arguments arguments, String encoded, Item item) throws Exception {
+        if (!arguments.hasOption(Option.OUT_DIR)) {
+            return encoded;
+        }
+        Item imported = item != null ? item : Timings.time(Timings.IMPORT, () -> Item.importFromEncoded(encoded));
+        return OutputSink.itemRecord(arguments, encoded, Timings.time(Timings.CRYPTO, imported::generateThumbprint));
+    }
+
+    public static String itemRecord(Arguments arguments, String encoded, String thumbprint) {
+        return arguments.hasOption(Option.OUT_DIR) ? thumbprint + OutputSink.THUMBPRINT_SEPARATOR + encoded : encoded;
+    }
+
+    // The policy given by --fsync, also followed by files that operations write outside of their output
+    public static String fsync(Arguments arguments) {
+        String fsync = arguments.get(Option.FSYNC);
+        if (fsync == null || fsync.length() == 0) {
+            return OutputSink.FSYNC_NONE;
+        } else if (!fsync.equals(OutputSink.FSYNC_NONE) && !fsync.equals(OutputSink.FSYNC_CLOSE) && !fsync.equals(OutputSink.FSYNC_ALWAYS)) {
+            throw new IllegalArgumentException("Invalid value for option " + Option.FSYNC + ": " + fsync);
+        }
+        return fsync;
+    }
+
+    public interface FileContent {
+        void write(OutputStream stream) throws IOException;
+    }
+
+    // Writes a file the way output files are written, to a temporary file next to it that is synced unless the policy is
+    // none, and then renamed into place. The content may close the stream it is given. Returns false if the file is not
+    // to be replaced and already exists, the existing file is kept
+    public static boolean writeFile(Path file, String fsync, boolean replace, FileContent content) throws IOException {
+        Path temporary = OutputSink.temporaryFile(file);
+        try {
+            try (FileOutputStream stream = new FileOutputStream(temporary.toFile())) {
+                content.write(new OpenOutputStream(stream));
+                if (!fsync.equals(OutputSink.FSYNC_NONE)) {
+                    stream.getFD().sync();
+                }
+            }
+            if (replace) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } else {
+                Files.move(temporary, file);
+            }
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            if (replace) { throw e; }
+            return false;
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    public static void writeFile(Path file, String fsync, String text) throws IOException {
+        OutputSink.writeFile(file, fsync, true, stream -> stream.write(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public abstract void writeRecord(String record) throws IOException;
+
+    // Writes part of a record, the record ends with the next newline. A record too large to be held in memory, such as
+    // a streamed envelope, is written this way
+    public void writePart(String part) throws IOException {
+        if (this.pending.length() > 0) {
+            writeRecordPart(this.pending.toString());
+            this.pending.setLength(0);
+        }
+        writeRecordPart(part);
+    }
+
+    // Writes raw bytes, such as a reassembled payload, directly after the records written so far. Not all destinations
+    // accept bytes
+    public void writeBytes(byte[] bytes) throws IOException {
+        writePending();
+        writeRecordBytes(bytes);
+    }
+
+    // Makes the output final, output that is closed without being committed is discarded where possible
+    public void commit() throws IOException {
+        writePending();
+        this.committed = true;
+    }
+
+    /// Writer ///
+
+    @Override
+    public void write(char[] buffer, int offset, int length) throws IOException {
+        write(new String(buffer, offset, length));
+    }
+
+    @Override
+    public void write(String string, int offset, int length) throws IOException {
+        int end = offset + length;
+        int start = offset;
+        for (int newline = string.indexOf('\n', start); newline >= 0 && newline < end; newline = string.indexOf('\n', start)) {
+            if (this.pending.length() > 0) {
+                this.pending.append(string, start, newline);
+                writeRecord(this.pending.toString());
+                this.pending.setLength(0);
+            } else {
+                writeRecord(string.substring(start, newline));
+            }
+            start = newline + 1;
+        }
+        this.pending.append(string, start, end);
+    }
+
+    @Override
+    public void flush() throws IOException { }
+
+    @Override
+    public void close() throws IOException {
+        if (this.committed) {
+            finish();
+        } else {
+            discard();
+        }
+    }
+
+    ///// PRIVATE /////
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int QUEUE_SIZE = 4096;
+    private static final char THUMBPRINT_SEPARATOR = '\t'; // Never part of a Dime encoded item
+
+    private final StringBuilder pending = new StringBuilder();
+    private boolean committed;
+
+    private void writePending() throws IOException {
+        if (this.pending.length() > 0) {
+            writeRecord(this.pending.toString());
+            this.pending.setLength(0);
+        }
+    }
+
+    protected void writeRecordPart(String part) throws IOException {
+        throw new IOException("Unable to write output in parts to this destination.");
+    }
+
+    protected void writeRecordBytes(byte[] bytes) throws IOException {
+        throw new IOException("Unable to write raw bytes to this destination.");
+    }
+
+    protected abstract void finish() throws IOException;
+
+    protected abstract void discard() throws IOException;
+
+    private static Path temporaryFile(Path file) {
+        return file.resolveSibling("." + file.getFileName() + "." + ProcessHandle.current().pid() + "." + Thread.currentThread().getId() + ".tmp");
+    }
+
+    /// Screen ///
+
+    private static final class StreamSink extends OutputSink {
+        private final OutputStream stream;
+        private final Writer writer;
+        StreamSink(PrintStream screen) {
+            this.stream = new OpenOutputStream(screen);
+            this.writer = new BufferedWriter(new OutputStreamWriter(this.stream, StandardCharsets.UTF_8), OutputSink.BUFFER_SIZE);
+        }
+        @Override
+        public void writeRecord(String record) throws IOException {
+            this.writer.write(record);
+            this.writer.write('\n');
+        }
+        @Override
+        protected void writeRecordPart(String part) throws IOException {
+            this.writer.write(part);
+        }
+        @Override
+        protected void writeRecordBytes(byte[] bytes) throws IOException {
+            this.writer.flush();
+            this.stream.write(bytes);
+        }
+        @Override
+        public void flush() throws IOException {
+            this.writer.flush();
+        }
+        @Override
+        protected void finish() throws IOException {
+            this.writer.close();
+        }
+        @Override
+        protected void discard() throws IOException {
+            this.writer.close(); // What has been written to the screen cannot be taken back
+        }
+    }
+
+    // Closing it leaves the underlying stream open, such as the screen that is owned by the caller
+    private static final class OpenOutputStream extends FilterOutputStream {
+        OpenOutputStream(OutputStream out) {
+            super(out);
+        }
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.out.write(b, off, len);
+        }
+        @Override
+        public void close() throws IOException {
+            this.out.flush();
+        }
+    }
+
+    /// File ///
+
+    private static final class FileSink extends OutputSink {
+        private final Path file;
+        private final Path temporary;
+        private final String fsync;
+        private final FileOutputStream stream;
+        private final Writer writer;
+        FileSink(Path file, String fsync) throws IOException {
+            this.file = file.toAbsolutePath();
+            this.temporary = OutputSink.temporaryFile(this.file);
+            this.fsync = fsync;
+            this.stream = new FileOutputStream(this.temporary.toFile());
+            this.writer = new BufferedWriter(new OutputStreamWriter(this.stream, StandardCharsets.UTF_8), OutputSink.BUFFER_SIZE);
+        }
+        @Override
+        public void writeRecord(String record) throws IOException {
+            this.writer.write(record);
+            this.writer.write('\n');
+        }
+        @Override
+        protected void writeRecordPart(String part) throws IOException {
+            this.writer.write(part);
+        }
+        @Override
+        protected void writeRecordBytes(byte[] bytes) throws IOException {
+            this.writer.flush();
+            this.stream.write(bytes);
+        }
+        @Override
+        public void flush() throws IOException {
+            this.writer.flush();
+            if (this.fsync.equals(OutputSink.FSYNC_ALWAYS)) {
+                this.stream.getFD().sync();
+            }
+        }
+        @Override
+        protected void finish() throws IOException {
+            this.writer.flush();
+            if (!this.fsync.equals(OutputSink.FSYNC_NONE)) {
+                this.stream.getFD().sync();
+            }
+            this.writer.close();
+            Files.move(this.temporary, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        @Override
+        protected void discard() throws IOException {
+            this.writer.close();
+            Files.deleteIfExists(this.temporary);
+        }
+    }
+
+    /// Directory ///
+
+    // Every record is a Dime encoded item, optionally preceded by its thumbprint (see itemRecord), stored as
+    // <directory>/<first two characters>/<thumbprint>.dime. An existing file is kept, as it holds the same item. Files
+    // created are removed again if the output is not committed
+    private static final class DirectorySink extends OutputSink {
+        private final Path directory;
+        private final String fsync;
+        private final List<Path> created = new ArrayList<>();
+        DirectorySink(Path directory, String fsync) throws IOException {
+            this.directory = directory.toAbsolutePath();
+            this.fsync = fsync;
+            Files.createDirectories(this.directory);
+        }
+        @Override
+        public void writeRecord(String record) throws IOException {
+            if (record.length() == 0) { return; }
+            int separator = record.indexOf(OutputSink.THUMBPRINT_SEPARATOR);
+            String thumbprint;
+            if (separator > 0) {
+                thumbprint = record.substring(0, separator);
+                record = record.substring(separator + 1);
+            } else {
+                try {
+                    Item item = Item.importFromEncoded(record);
+                    thumbprint = item.generateThumbprint();
+                } catch (Exception e) {
+                    throw new IOException("Unable to write output to directory, not a Dime item: " + e.getMessage(), e);
+                }
+            }
+            Path file = this.directory.resolve(thumbprint.substring(0, 2)).resolve(thumbprint + ".dime");
+            Files.createDirectories(file.getParent());
+            byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+            if (OutputSink.writeFile(file, this.fsync, false, stream -> stream.write(bytes))) {
+                synchronized (this.created) {
+                    this.created.add(file);
+                }
+            }
+        }
+        @Override
+        protected void finish() { }
+        @Override
+        protected void discard() throws IOException {
+            synchronized (this.created) {
+                for (Path file: this.created) {
+                    Files.deleteIfExists(file);
+                }
+                this.created.clear();
+            }
+        }
+    }
+
+    /// Asynchronous ///
+
+    private static final class AsyncSink extends OutputSink {
+        private static final Object FLUSH = new Object();
+        private static final Object END = new Object();
+        private static final class Part {
+            final String part;
+            Part(String part) {
+                this.part = part;
+            }
+        }
+        private final OutputSink sink;
+        private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(OutputSink.QUEUE_SIZE);
+        private final Thread thread;
+        private volatile IOException failure;
+        AsyncSink(OutputSink sink) {
+            this.sink = sink;
+            this.thread = new Thread(this::drain, "dimetool-output");
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+        @Override
+        public void writeRecord(String record) throws IOException {
+            enqueue(record);
+        }
+        @Override
+        protected void writeRecordPart(String part) throws IOException {
+            enqueue(new Part(part));
+        }
+        @Override
+        public void flush() throws IOException {
+            enqueue(AsyncSink.FLUSH);
+        }
+        @Override
+        public void commit() throws IOException {
+            super.commit();
+            stop();
+            this.sink.commit();
+        }
+        @Override
+        protected void finish() throws IOException {
+            this.sink.close();
+        }
+        @Override
+        protected void discard() throws IOException {
+            this.thread.interrupt();
+            try {
+                this.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.sink.close();
+        }
+        private void enqueue(Object entry) throws IOException {
+            if (this.failure != null) { throw this.failure; }
+            try {
+                this.queue.put(entry);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while writing output.");
+            }
+        }
+        private void stop() throws IOException {
+            enqueue(AsyncSink.END);
+            try {
+                this.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while writing output.");
+            }
+            if (this.failure != null) { throw this.failure; }
+        }
+        private void drain() {
+            try {
+                Object entry;
+                while ((entry = this.queue.take()) != AsyncSink.END) {
+                    if (entry == AsyncSink.FLUSH) {
+                        this.sink.flush();
+                    } else if (entry instanceof Part) {
+                        this.sink.writeRecordPart(((Part) entry).part);
+                    } else {
+                        this.sink.writeRecord((String) entry);
+                    }
+                }
+            } catch (InterruptedException e) {
+                /* ignore this, output is discarded */
+            } catch (IOException e) {
+                this.failure = e;
+                this.queue.clear(); // Unblock any producer, the failure is reported on its next write
+            }
+        }
+    }
+
+}
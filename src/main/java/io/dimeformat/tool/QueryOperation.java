@@ -0,0 +1,246 @@
+//
+//  QueryOperation.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import io.dimeformat.Envelope;
+import io.dimeformat.Item;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+
+public class QueryOperation extends Operation {
+
+    public static final String NAME = "query";
+
+    @Override
+    public String getDescription() {
+        return "Finds Dime items by type and claims, only the claims of an item are decoded unless it matches.";
+    }
+
+    @Override
+    public List<Option> getOptions() {
+        ArrayList<Option> array = new ArrayList<>();
+        Collections.addAll(array,
+                new Option(Option.BATCH, false, "Directory that is searched recursively with one item per file, file with newline-delimited items, or Dime archive, to query, use '-' to read from stdin."),
+                new Option(Option.STORE, false, "Item store directory to query, instead of " + Option.BATCH + "."),
+                new Option(Option.TYPE, false, "Item types to match, given as item headers, e.g. ID, KEY or DAT."),
+                new Option(Option.ISS, false, "Issuer ids (UUID) to match."),
+                new Option(Option.SUB, false, "Subject ids (UUID) to match."),
+                new Option(Option.CTX, false, "Contexts to match."),
+                new Option(Option.SYS, false, "System names to match."),
+                new Option(Option.CAP, false, "Capabilities that matching items must all have."),
+                new Option(Option.AMB, false, "Ambits that matching items must all have."),
+                new Option(Option.CLAIM, false, "Other claims to match, given as name=value, e.g. mim=text/plain."),
+                new Option(Option.ORDER, false, "Order of matching items, defaults to input order.", List.of(BatchProcessor.ORDER_INPUT + "\t\t(same order as the input)", BatchProcessor.ORDER_COMPLETION + "\t(in order of completion)")),
+                new Option(Option.WORKERS, false, "Number of worker threads to use, defaults to number of processors."));
+        return array;
+    }
+
+    @Override
+    public String execute() throws Exception {
+        String source = arguments.get(Option.BATCH);
+        String store = arguments.get(Option.STORE);
+        if ((source == null || source.length() == 0) && (store == null || store.length() == 0)) {
+            DimeTool.showErrorMessage(this, "Missing required option: " + Option.BATCH + " or " + Option.STORE + ".", true);
+            return null;
+        }
+        List<Filter> filters = filters();
+        if (filters == null) {
+            return null;
+        }
+        String[] types = arguments.getArray(Option.TYPE);
+        BatchProcessor<Candidate> processor = BatchProcessor.fromArguments(arguments);
+        try (OutputSink output = OutputSink.open(arguments, getOutputStream())) {
+            BatchProcessor.Task<Candidate> task = candidate -> {
+                String encoded = candidate.read();
+                return QueryOperation.matches(encoded, types, filters) ? OutputSink.itemRecord(arguments, encoded) : null;
+            };
+            if (store != null && store.length() > 0) {
+                try (ItemStore itemStore = ItemStore.openReadOnly(Path.of(store));
+                     Stream<String> thumbprints = itemStore.thumbprints()) {
+                    process(processor, thumbprints.map(thumbprint -> new Candidate(itemStore.objectPath(thumbprint))).iterator(), task, output);
+                }
+            } else if (Files.isDirectory(Path.of(source))) {
+                try (Stream<Path> files = Files.walk(Path.of(source))) {
+                    Iterator<Candidate> candidates = files.filter(path -> Files.isRegularFile(path) && !path.getFileName().toString().startsWith("."))
+                            .map(Candidate::new).iterator();
+                    process(processor, candidates, task, output);
+                }
+            } else if (types != null && DimeArchive.isArchive(Path.of(source))) {
+                executeArchive(Path.of(source), types, processor, task, output);
+            } else {
+                try (RecordReader reader = RecordReader.open(source)) {
+                    Iterator<Candidate> candidates = new Iterator<>() {
+                        @Override
+                        public boolean hasNext() { return reader.hasNext(); }
+                        @Override
+                        public Candidate next() { return new Candidate(reader.next()); }
+                    };
+                    process(processor, candidates, task, output);
+                }
+            }
+            output.commit();
+        }
+        return null;
+    }
+
+    ///// PRIVATE /////
+
+    // A file or archive entry is read by the worker that evaluates it, so reading is spread across workers as well
+    private static final class Candidate {
+        final Path path;
+        final RecordReader.Record record;
+        final DimeArchive archive;
+        final DimeArchive.Entry entry;
+        Candidate(Path path) {
+            this(path, null, null, null);
+        }
+        Candidate(RecordReader.Record record) {
+            this(null, record, null, null);
+        }
+        Candidate(DimeArchive archive, DimeArchive.Entry entry) {
+            this(null, null, archive, entry);
+        }
+        private Candidate(Path path, RecordReader.Record record, DimeArchive archive, DimeArchive.Entry entry) {
+            this.path = path;
+            this.record = record;
+            this.archive = archive;
+            this.entry = entry;
+        }
+        String read() throws IOException {
+            if (this.entry != null) {
+                return this.archive.readItem(this.entry);
+            }
+            return this.record != null ? this.record.read() : Utility.readFile(this.path.toFile()).trim();
+        }
+        @Override
+        public String toString() {
+            if (this.entry != null) {
+                return this.entry.thumbprint;
+            }
+            return this.record != null ? this.record.name : this.path.toString();
+        }
+    }
+
+    private static final class Filter {
+        final String claim;
+        final List<String> values;
+        final boolean all; // All values must be present, otherwise any one of them
+        Filter(String claim, List<String> values, boolean all) {
+            this.claim = claim;
+            this.values = values;
+            this.all = all;
+        }
+        boolean matches(ItemHeader header) {
+            List<String> present = header.getClaimValues(this.claim);
+            if (this.all) {
+                for (String value: this.values) {
+                    if (!QueryOperation.containsIgnoreCase(present, value)) { return false; }
+                }
+                return true;
+            }
+            for (String value: this.values) {
+                if (QueryOperation.containsIgnoreCase(present, value)) { return true; }
+            }
+            return false;
+        }
+    }
+
+    private List<Filter> filters() {
+        List<Filter> filters = new ArrayList<>();
+        addFilter(filters, Option.ISS, "iss", false);
+        addFilter(filters, Option.SUB, "sub", false);
+        addFilter(filters, Option.CTX, "ctx", false);
+        addFilter(filters, Option.SYS, "sys", false);
+        addFilter(filters, Option.CAP, "cap", true);
+        addFilter(filters, Option.AMB, "amb", true);
+        String[] claims = arguments.getArray(Option.CLAIM);
+        if (claims != null) {
+            for (String claim: claims) {
+                int separator = claim.indexOf('=');
+                if (separator <= 0) {
+                    DimeTool.showErrorMessage(this, "Invalid value for option " + Option.CLAIM + ": " + claim, true);
+                    return null;
+                }
+                filters.add(new Filter(claim.substring(0, separator).toLowerCase(), List.of(claim.substring(separator + 1)), true));
+            }
+        }
+        return filters;
+    }
+
+    private void addFilter(List<Filter> filters, String option, String claim, boolean all) {
+        String[] values = arguments.getArray(option);
+        if (values != null && values.length > 0 && values[0].length() > 0) {
+            filters.add(new Filter(claim, List.of(values), all));
+        }
+    }
+
+    // Only entries of the requested types are read from an archive, using its type index. The index holds item headers
+    // as they are, which are upper case, while types are otherwise matched ignoring case
+    private void executeArchive(Path file, String[] types, BatchProcessor<Candidate> processor, BatchProcessor.Task<Candidate> task, OutputSink output) throws Exception {
+        try (DimeArchive archive = DimeArchive.open(file)) {
+            Set<String> wanted = new LinkedHashSet<>();
+            for (String type: types) {
+                wanted.add(type.toUpperCase(Locale.ROOT));
+            }
+            List<DimeArchive.Entry> entries = new ArrayList<>();
+            for (String type: wanted) {
+                entries.addAll(archive.findByType(type));
+            }
+            entries.sort(Comparator.comparingLong(entry -> entry.offset));
+            process(processor, entries.stream().map(entry -> new Candidate(archive, entry)).iterator(), task, output);
+        }
+    }
+
+    // An envelope matches if any of its items match, a match is imported in full so that only well-formed items are
+    // returned
+    private static boolean matches(String encoded, String[] types, List<Filter> filters) throws Exception {
+        List<ItemHeader> headers = Timings.time(Timings.IMPORT, () -> ItemHeader.decode(encoded));
+        boolean matched = false;
+        for (ItemHeader header: headers) {
+            if (QueryOperation.matches(header, types, filters)) {
+                matched = true;
+                break;
+            }
+        }
+        if (!matched) {
+            return false;
+        }
+        Timings.run(Timings.IMPORT, () -> {
+            if (encoded.startsWith(ItemHeader.ENVELOPE_HEADER)) {
+                Envelope.importFromEncoded(encoded);
+            } else {
+                Item.importFromEncoded(encoded);
+            }
+        });
+        return true;
+    }
+
+    private static boolean matches(ItemHeader header, String[] types, List<Filter> filters) {
+        if (types != null && !QueryOperation.containsIgnoreCase(Arrays.asList(types), header.getType())) {
+            return false;
+        }
+        for (Filter filter: filters) {
+            if (!filter.matches(header)) { return false; }
+        }
+        return true;
+    }
+
+    private static boolean containsIgnoreCase(List<String> values, String value) {
+        for (String candidate: values) {
+            if (candidate.equalsIgnoreCase(value)) { return true; }
+        }
+        return false;
+    }
+
+}
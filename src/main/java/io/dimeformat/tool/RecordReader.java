@@ -0,0 +1,199 @@
+//
+//  RecordReader.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class RecordReader implements Iterator<RecordReader.Record>, Closeable {
+
+    ///// PUBLIC /////
+
+    public static final String STDIN = "-";
+
+    public static final class Record {
+        public final String name;
+        public final String value;
+        public final IOException error; // Set if the record could not be read, the value is then null
+        public Record(String name, String value) {
+            this.name = name;
+            this.value = value;
+            this.error = null;
+        }
+        public Record(String name, IOException error) {
+            this.name = name;
+            this.value = null;
+            this.error = error;
+        }
+        public String read() throws IOException {
+            if (this.error != null) { throw this.error; }
+            return this.value;
+        }
+        @Override
+        public String toString() {
+            return this.name;
+        }
+    }
+
+    /// Constructors ///
+
+    public RecordReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    public RecordReader(Path directory) throws IOException {
+        this.directory = Files.newDirectoryStream(directory, path -> Files.isRegularFile(path) && !path.getFileName().toString().startsWith("."));
+        this.files = this.directory.iterator();
+    }
+
+    // Records of an archive are named by their thumbprint
+    public RecordReader(DimeArchive archive) {
+        this.archive = archive;
+        this.entries = archive.entries();
+    }
+
+    // Records of an envelope are the items within it, read one at a time
+    public RecordReader(EnvelopeReader envelope) {
+        this.envelope = envelope;
+    }
+
+    // Records are read item by item from the envelope given with --envelope, otherwise from --batch
+    public static RecordReader open(Arguments arguments) throws IOException {
+        String envelope = arguments.get(Option.ENVELOPE);
+        if (envelope != null && envelope.length() > 0) {
+            return new RecordReader(EnvelopeReader.open(envelope));
+        }
+        return RecordReader.open(arguments.get(Option.BATCH));
+    }
+
+    public static RecordReader open(String source) throws IOException {
+        if (source == null || source.length() == 0) {
+            throw new IllegalArgumentException("Missing record source.");
+        }
+        if (source.equals(RecordReader.STDIN)) {
+            return new RecordReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        }
+        File file = new File(source);
+        if (file.isDirectory()) {
+            return new RecordReader(file.toPath());
+        }
+        if (DimeArchive.isArchive(file.toPath())) {
+            return new RecordReader(DimeArchive.open(file.toPath()));
+        }
+        return new RecordReader(new InputStreamReader(new FileInputStream(source), StandardCharsets.UTF_8));
+    }
+
+    /// Iterator ///
+
+    @Override
+    public boolean hasNext() {
+        if (this.next == null) {
+            if (this.reader != null) {
+                this.next = readNext();
+            } else if (this.files != null) {
+                this.next = readNextFile();
+            } else if (this.entries != null) {
+                this.next = readNextEntry();
+            } else if (this.envelope != null && this.envelope.hasNext()) {
+                this.next = this.envelope.next();
+            }
+        }
+        return this.next != null;
+    }
+
+    @Override
+    public Record next() {
+        if (!hasNext()) { throw new NoSuchElementException(); }
+        Record record = this.next;
+        this.next = null;
+        return record;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.reader != null) {
+            this.reader.close();
+            this.reader = null;
+        }
+        if (this.directory != null) {
+            this.directory.close();
+            this.directory = null;
+            this.files = null;
+        }
+        if (this.archive != null) {
+            this.archive.close();
+            this.archive = null;
+            this.entries = null;
+        }
+        if (this.envelope != null) {
+            this.envelope.close();
+            this.envelope = null;
+        }
+    }
+
+    ///// PRIVATE /////
+
+    private BufferedReader reader;
+    private DirectoryStream<Path> directory;
+    private Iterator<Path> files;
+    private DimeArchive archive;
+    private Iterator<DimeArchive.Entry> entries;
+    private EnvelopeReader envelope;
+    private Record next;
+    private long lineNumber;
+
+    private Record readNext() {
+        try {
+            String line;
+            while ((line = this.reader.readLine()) != null) {
+                this.lineNumber++;
+                line = line.trim();
+                if (line.length() > 0) {
+                    return new Record(Long.toString(this.lineNumber), line);
+                }
+            }
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // A file that cannot be read is a failed record, it does not end the batch
+    private Record readNextFile() {
+        while (this.files.hasNext()) {
+            Path path = this.files.next();
+            try {
+                String value = Utility.readFile(path.toFile()).trim();
+                if (value.length() > 0) {
+                    return new Record(path.getFileName().toString(), value);
+                }
+            } catch (IOException e) {
+                return new Record(path.getFileName().toString(), e);
+            }
+        }
+        return null;
+    }
+
+    private Record readNextEntry() {
+        try {
+            if (!this.entries.hasNext()) { return null; }
+            DimeArchive.Entry entry = this.entries.next();
+            return new Record(entry.thumbprint, this.archive.readItem(entry));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
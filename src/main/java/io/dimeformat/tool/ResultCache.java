@@ -0,0 +1,320 @@
+//
+//  ResultCache.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import io.dimeformat.Identity;
+import io.dimeformat.Item;
+import io.dimeformat.keyring.IntegrityState;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Size-bounded LRU cache of thumbprints (keyed by a SHA-256 digest of the encoded item) and verification results (keyed
+// by item thumbprint, verifier thumbprint and grace period). A verification result is stored together with the interval
+// of verification times for which the date checks give the same outcome, so it is reused for other --setdate values or
+// a later current time only while that still holds. Optionally persisted to a directory between invocations, new entries
+// are appended to the cache files and the files are only rewritten once they hold twice the maximum number of entries.
+public class ResultCache {
+
+    ///// PUBLIC /////
+
+    public static final long DEFAULT_MAX_ENTRIES = 100_000L;
+
+    public static final class Verification {
+        public final IntegrityState state;
+        final long from;
+        final long until;
+        Verification(IntegrityState state, long from, long until) {
+            this.state = state;
+            this.from = from;
+            this.until = until;
+        }
+    }
+
+    // Returns the persistent cache given by --cache, or null if caching is not requested
+    public static ResultCache open(Arguments arguments) throws IOException {
+        String directory = arguments.get(Option.CACHE);
+        if (directory == null || directory.length() == 0) {
+            return null;
+        }
+        long maxEntries = arguments.getLong(Option.CACHE_SIZE, ResultCache.DEFAULT_MAX_ENTRIES);
+        Path path = Path.of(directory).toAbsolutePath().normalize();
+        ResultCache cache;
+        try {
+            cache = ResultCache.caches.computeIfAbsent(path, p -> {
+                try {
+                    return new ResultCache(p, maxEntries);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        cache.resize(maxEntries); // A cache kept by a daemon follows the size of the latest invocation
+        return cache;
+    }
+
+    public static ResultCache inMemory() {
+        return new ResultCache(ResultCache.DEFAULT_MAX_ENTRIES);
+    }
+
+    /// Thumbprints ///
+
+    public interface ItemSource {
+        Item get() throws Exception;
+    }
+
+    public String thumbprint(String encoded, ItemSource source) throws Exception {
+        String digest = ResultCache.digest(encoded);
+        String thumbprint;
+        synchronized (this) {
+            thumbprint = this.thumbprints.get(digest);
+        }
+        if (thumbprint == null) {
+            thumbprint = source.get().generateThumbprint();
+            synchronized (this) {
+                this.thumbprints.put(digest, thumbprint);
+                this.pendingThumbprints.add(digest);
+            }
+        }
+        return thumbprint;
+    }
+
+    /// Verifications ///
+
+    public Verification lookup(String itemThumbprint, String verifierThumbprint, long gracePeriod, Instant at) {
+        Verification verification;
+        synchronized (this) {
+            verification = this.verifications.get(ResultCache.key(itemThumbprint, verifierThumbprint, gracePeriod));
+        }
+        long time = at.toEpochMilli();
+        return verification != null && time >= verification.from && time <= verification.until ? verification : null;
+    }
+
+    public void store(String itemThumbprint, String verifierThumbprint, long gracePeriod, Instant at, IntegrityState state, Item... items) {
+        long notBefore = Long.MIN_VALUE;
+        long notAfter = Long.MAX_VALUE;
+        for (Item item: items) {
+            for (Item link = item; link != null; link = link instanceof Identity ? ((Identity) link).getTrustChain() : null) {
+                if (link.getIssuedAt() != null) {
+                    notBefore = Math.max(notBefore, link.getIssuedAt().toEpochMilli() - gracePeriod * 1000L);
+                }
+                if (link.getExpiresAt() != null) {
+                    notAfter = Math.min(notAfter, link.getExpiresAt().toEpochMilli() + gracePeriod * 1000L);
+                }
+            }
+        }
+        long time = at.toEpochMilli();
+        Verification verification;
+        if (time < notBefore) {
+            verification = new Verification(state, Long.MIN_VALUE, notBefore - 1);
+        } else if (time > notAfter) {
+            verification = new Verification(state, notAfter + 1, Long.MAX_VALUE);
+        } else {
+            verification = new Verification(state, notBefore, notAfter);
+        }
+        String key = ResultCache.key(itemThumbprint, verifierThumbprint, gracePeriod);
+        synchronized (this) {
+            this.verifications.put(key, verification);
+            this.pendingVerifications.add(key);
+        }
+    }
+
+    /// Persistence ///
+
+    public synchronized void save() throws IOException {
+        if (this.directory == null || (this.pendingThumbprints.isEmpty() && this.pendingVerifications.isEmpty())) { return; }
+        Files.createDirectories(this.directory);
+        this.thumbprintLines = save(ResultCache.THUMBPRINT_FILE, this.thumbprints, this.pendingThumbprints, this.thumbprintLines,
+                ResultCache::thumbprintValue);
+        this.verificationLines = save(ResultCache.VERIFICATION_FILE, this.verifications, this.pendingVerifications, this.verificationLines,
+                ResultCache::verificationValue);
+    }
+
+    ///// PRIVATE /////
+
+    private static final String THUMBPRINT_FILE = "thumbprints.cache";
+    private static final String VERIFICATION_FILE = "verifications.cache";
+    private static final Map<Path, ResultCache> caches = new ConcurrentHashMap<>();
+
+    private static final int DIGEST_LENGTH = 64;
+
+    private final Path directory;
+    private final Map<String, String> thumbprints;
+    private final Map<String, Verification> verifications;
+    // Keys added since the last save, in the order they were added
+    private final Set<String> pendingThumbprints = new LinkedHashSet<>();
+    private final Set<String> pendingVerifications = new LinkedHashSet<>();
+    private long maxEntries;
+    private long thumbprintLines;
+    private long verificationLines;
+
+    private ResultCache(long maxEntries) {
+        this.directory = null;
+        this.maxEntries = maxEntries;
+        this.thumbprints = lru();
+        this.verifications = lru();
+    }
+
+    private ResultCache(Path directory, long maxEntries) throws IOException {
+        this.directory = directory;
+        this.maxEntries = maxEntries;
+        this.thumbprints = lru();
+        this.verifications = lru();
+        this.thumbprintLines = read(ResultCache.THUMBPRINT_FILE, 2, (key, fields) -> {
+            if (!ResultCache.isHex(key, ResultCache.DIGEST_LENGTH) || !ResultCache.isHex(fields[1], -1)) { return; }
+            this.thumbprints.put(key, fields[1]);
+        });
+        this.verificationLines = read(ResultCache.VERIFICATION_FILE, 4, (key, fields) -> {
+            String[] parts = key.split("\\|");
+            if (parts.length != 3 || !ResultCache.isHex(parts[0], -1) || !ResultCache.isHex(parts[1], -1)) { return; }
+            Long.parseLong(parts[2]);
+            this.verifications.put(key, new Verification(IntegrityState.valueOf(fields[1]), Long.parseLong(fields[2]), Long.parseLong(fields[3])));
+        });
+    }
+
+    private <V> Map<String, V> lru() {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > ResultCache.this.maxEntries;
+            }
+        };
+    }
+
+    private synchronized void resize(long maxEntries) {
+        this.maxEntries = maxEntries;
+        ResultCache.trim(this.thumbprints, maxEntries);
+        ResultCache.trim(this.verifications, maxEntries);
+    }
+
+    private static void trim(Map<String, ?> map, long maxEntries) {
+        Iterator<String> eldest = map.keySet().iterator();
+        while (map.size() > maxEntries && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    private static boolean isHex(String value, int length) {
+        if (value.length() == 0 || (length >= 0 && value.length() != length)) { return false; }
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.digit(value.charAt(i), 16) < 0) { return false; }
+        }
+        return true;
+    }
+
+    private static String thumbprintValue(String value) {
+        return value;
+    }
+
+    private static String verificationValue(Verification value) {
+        return value.state.name() + "\t" + value.from + "\t" + value.until;
+    }
+
+    private static String key(String itemThumbprint, String verifierThumbprint, long gracePeriod) {
+        return itemThumbprint + "|" + verifierThumbprint + "|" + gracePeriod;
+    }
+
+    private static String digest(String encoded) throws NoSuchAlgorithmException {
+        byte[] hash = MessageDigest.getInstance("SHA-256").digest(encoded.getBytes(StandardCharsets.UTF_8));
+        StringBuilder hex = new StringBuilder(hash.length * 2);
+        for (byte b: hash) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private interface LineReader {
+        void read(String key, String[] fields);
+    }
+
+    private interface ValueWriter<V> {
+        String write(V value);
+    }
+
+    // Returns the number of lines read. Later lines replace earlier ones for the same key, lines with the wrong number of
+    // fields or an invalid value (such as one cut short by an interrupted write) are dropped
+    private long read(String filename, int fieldCount, LineReader reader) throws IOException {
+        Path file = this.directory.resolve(filename);
+        if (!Files.isRegularFile(file)) { return 0L; }
+        long count = 0L;
+        try (BufferedReader lines = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = lines.readLine()) != null) {
+                count++;
+                String[] fields = line.split("\t", -1);
+                if (fields.length != fieldCount) { continue; }
+                try {
+                    reader.read(fields[0], fields);
+                } catch (RuntimeException e) {
+                    /* ignore this, corrupt entries are dropped */
+                }
+            }
+        }
+        return count;
+    }
+
+    // Appends the pending entries still in the cache, or rewrites the file from the cache once it has grown to twice the
+    // maximum number of entries. Returns the number of lines in the file
+    private <V> long save(String filename, Map<String, V> map, Set<String> pending, long lines, ValueWriter<V> writer) throws IOException {
+        if (pending.isEmpty()) { return lines; }
+        Path file = this.directory.resolve(filename);
+        StringBuilder appended = new StringBuilder();
+        long count = 0L;
+        for (String key: pending) {
+            V value = map.get(key);
+            if (value != null) {
+                appended.append(key).append('\t').append(writer.write(value)).append('\n');
+                count++;
+            }
+        }
+        pending.clear();
+        if (lines + count > 2 * this.maxEntries) {
+            write(file, map, writer);
+            return map.size();
+        }
+        // A single append of whole lines, so entries appended by other processes are not interleaved with these
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+             FileLock ignored = channel.lock()) {
+            ByteBuffer bytes = ByteBuffer.wrap(appended.toString().getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+        return lines + count;
+    }
+
+    // Entries are written eldest first, so reading them back in order restores the LRU order. The cache can always be
+    // computed again, so it is never synced
+    private <V> void write(Path file, Map<String, V> map, ValueWriter<V> writer) throws IOException {
+        OutputSink.writeFile(file, OutputSink.FSYNC_NONE, true, stream -> {
+            try (BufferedWriter lines = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8))) {
+                for (Map.Entry<String, V> entry: map.entrySet()) {
+                    lines.write(entry.getKey());
+                    lines.write('\t');
+                    lines.write(writer.write(entry.getValue()));
+                    lines.write('\n');
+                }
+            }
+        });
+    }
+
+}
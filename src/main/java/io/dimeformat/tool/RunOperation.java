@@ -0,0 +1,222 @@
+//
+//  RunOperation.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class RunOperation extends Operation {
+
+    public static final String NAME = "run";
+
+    @Override
+    public String getDescription() {
+        return "Runs a script of operations, independent steps are run in parallel.";
+    }
+
+    @Override
+    public List<Option> getOptions() {
+        ArrayList<Option> array = new ArrayList<>();
+        Collections.addAll(array,
+                new Option(Option.SCRIPT, true, "Script file with one operation per line, optionally named as 'name = operation [options]'. The output of a named step is used as an option value where '$name' is given, steps may only refer to steps above them."),
+                new Option(Option.WORKERS, false, "Number of steps that are run concurrently, defaults to number of processors."));
+        return array;
+    }
+
+    @Override
+    public boolean isDispatcher() {
+        return true; // Every step takes its own lock
+    }
+
+    @Override
+    public String execute() throws Exception {
+        String script = arguments.get(Option.SCRIPT);
+        if (script == null || script.length() == 0) {
+            DimeTool.showErrorMessage(this, "Missing required option: " + Option.SCRIPT + ".", true);
+            return null;
+        }
+        List<Step> steps = parse(Files.readAllLines(Path.of(script), StandardCharsets.UTF_8));
+        int workers = (int) Math.max(1L, arguments.getLong(Option.WORKERS, Runtime.getRuntime().availableProcessors()));
+        ExecutorService executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "dimetool-run");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            for (Step step: steps) {
+                CompletableFuture<?>[] inputs = step.inputs.stream().map(input -> input.result).toArray(CompletableFuture[]::new);
+                step.result = CompletableFuture.allOf(inputs).handleAsync((ignored, failure) -> step.run(), executor);
+            }
+            CompletableFuture.allOf(steps.stream().map(step -> step.result).toArray(CompletableFuture[]::new)).join();
+        } finally {
+            executor.shutdownNow();
+        }
+        long failed = 0;
+        try (OutputSink output = OutputSink.open(arguments, getOutputStream(), false)) {
+            for (Step step: steps) {
+                output.writeRecord(step.name + "\t" + step.state + "\t" + step.millis);
+                if (!step.state.equals(Step.OK)) { failed++; }
+            }
+            output.commit();
+        }
+        if (failed > 0) {
+            getErrorStream().println("[ERROR] " + failed + " of " + steps.size() + " steps did not complete.");
+            setFailed();
+        }
+        return null;
+    }
+
+    ///// PRIVATE /////
+
+    private static final String REFERENCE_PREFIX = "$";
+
+    private final class Step {
+
+        static final String OK = "ok";
+        static final String FAILED = "failed";
+        static final String SKIPPED = "skipped";
+
+        final String name;
+        final List<String> tokens;
+        final List<Step> inputs;
+        volatile CompletableFuture<String> result;
+        volatile String output;
+        volatile String state = Step.SKIPPED;
+        volatile long millis;
+
+        Step(String name, List<String> tokens, List<Step> inputs) {
+            this.name = name;
+            this.tokens = tokens;
+            this.inputs = inputs;
+        }
+
+        // Executes the operation in this process with captured streams, the output is kept for dependent steps. A step
+        // fails if the operation exits with a non-zero status
+        String run() {
+            for (Step input: this.inputs) {
+                if (input.output == null) {
+                    return null;
+                }
+            }
+            String[] args = new String[this.tokens.size()];
+            for (int i = 0; i < args.length; i++) {
+                String token = this.tokens.get(i);
+                args[i] = token.startsWith(RunOperation.REFERENCE_PREFIX) && token.length() > 1 ? find(token.substring(1)).output : token;
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ByteArrayOutputStream err = new ByteArrayOutputStream();
+            long start = System.nanoTime();
+            int status;
+            try (PrintStream outStream = new PrintStream(out, false, StandardCharsets.UTF_8);
+                 PrintStream errStream = new PrintStream(err, false, StandardCharsets.UTF_8)) {
+                status = DimeTool.run(args, outStream, errStream);
+            }
+            this.millis = (System.nanoTime() - start) / 1_000_000L;
+            String errors = err.toString(StandardCharsets.UTF_8);
+            if (errors.length() > 0) {
+                PrintStream stream = getErrorStream();
+                synchronized (stream) {
+                    stream.print(errors);
+                }
+            }
+            if (status != 0) {
+                this.state = Step.FAILED;
+                return null;
+            }
+            this.state = Step.OK;
+            this.output = out.toString(StandardCharsets.UTF_8).trim();
+            return this.output;
+        }
+
+        Step find(String name) {
+            for (Step input: this.inputs) {
+                if (input.name.equals(name)) { return input; }
+            }
+            throw new IllegalStateException("Unknown step: " + name);
+        }
+
+    }
+
+    private List<Step> parse(List<String> lines) {
+        List<Step> steps = new ArrayList<>();
+        Map<String, Step> named = new HashMap<>();
+        for (int number = 1; number <= lines.size(); number++) {
+            String line = lines.get(number - 1).trim();
+            if (line.length() == 0 || line.startsWith("#")) { continue; }
+            String name = "line " + number;
+            int assignment = line.indexOf('=');
+            if (assignment > 0 && line.substring(0, assignment).trim().indexOf(' ') < 0) {
+                name = line.substring(0, assignment).trim();
+                line = line.substring(assignment + 1).trim();
+                if (named.containsKey(name)) {
+                    throw new IllegalArgumentException("Duplicate step name on line " + number + ": " + name);
+                }
+            }
+            List<String> tokens = RunOperation.tokenize(line);
+            if (tokens.isEmpty()) {
+                throw new IllegalArgumentException("Missing operation on line " + number + ".");
+            }
+            if (tokens.get(0).equals(RunOperation.NAME) || tokens.get(0).equals(ServeOperation.NAME)) {
+                throw new IllegalArgumentException("Operation not allowed in a script on line " + number + ": " + tokens.get(0));
+            }
+            List<Step> inputs = new ArrayList<>();
+            for (String token: tokens) {
+                if (token.startsWith(RunOperation.REFERENCE_PREFIX) && token.length() > 1) {
+                    Step input = named.get(token.substring(1));
+                    if (input == null) {
+                        throw new IllegalArgumentException("Unknown step referenced on line " + number + ": " + token);
+                    }
+                    if (!inputs.contains(input)) { inputs.add(input); }
+                }
+            }
+            Step step = new Step(name, tokens, inputs);
+            named.put(name, step);
+            steps.add(step);
+        }
+        return steps;
+    }
+
+    // Splits on whitespace, double quotes keep whitespace within a token
+    private static List<String> tokenize(String line) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = null;
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+                if (token == null) { token = new StringBuilder(); }
+            } else if (Character.isWhitespace(c) && !quoted) {
+                if (token != null) {
+                    tokens.add(token.toString());
+                    token = null;
+                }
+            } else {
+                if (token == null) { token = new StringBuilder(); }
+                token.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quote: " + line);
+        }
+        if (token != null) {
+            tokens.add(token.toString());
+        }
+        return tokens;
+    }
+
+}
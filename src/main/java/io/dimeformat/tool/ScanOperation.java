@@ -0,0 +1,152 @@
+//
+//  ScanOperation.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Stream;
+
+public class ScanOperation extends Operation {
+
+    public static final String NAME = "scan";
+
+    public static final String STATE_EXPIRED = "expired";
+    public static final String STATE_EXPIRING = "expiring";
+    public static final String STATE_NOT_YET_VALID = "notyetvalid";
+    public static final long DEFAULT_DAYS = 30L;
+
+    @Override
+    public String getDescription() {
+        return "Scans Dime items for expired, expiring and not yet valid items.";
+    }
+
+    @Override
+    public List<Option> getOptions() {
+        ArrayList<Option> array = new ArrayList<>();
+        Collections.addAll(array,
+                new Option(Option.BATCH, true, "Directory that is searched recursively with one item per file, file with newline-delimited items, or Dime archive, to scan, use '-' to read from stdin."),
+                new Option(Option.DAYS, false, "Number of days ahead within which items are reported as expiring, defaults to " + ScanOperation.DEFAULT_DAYS + "."),
+                new Option(Option.SET_DATE, false, "Overrides the current system time and uses the provided date for the scan, should be provided in RFC 3339 format."),
+                new Option(Option.INDEX, false, "Expiry index file, sorted by expiry date, created if it does not exist. Unchanged files, and archive items, already in the index are not read again. Not used when reading newline-delimited items."),
+                new Option(Option.ORDER, false, "Order of result lines, defaults to input order.", List.of(BatchProcessor.ORDER_INPUT + "\t\t(same order as the input)", BatchProcessor.ORDER_COMPLETION + "\t(in order of completion)")),
+                new Option(Option.WORKERS, false, "Number of worker threads to use, defaults to number of processors."));
+        return array;
+    }
+
+    @Override
+    public String execute() throws Exception {
+        String source = arguments.get(Option.BATCH);
+        if (source == null || source.length() == 0) {
+            DimeTool.showErrorMessage(this, "Missing required option: " + Option.BATCH + ".", true);
+            return null;
+        }
+        Instant time = arguments.getInstant(Option.SET_DATE);
+        Instant now = time != null ? time : Instant.now();
+        Instant horizon = now.plus(Duration.ofDays(arguments.getLong(Option.DAYS, ScanOperation.DEFAULT_DAYS)));
+        String indexFile = arguments.get(Option.INDEX);
+        ExpiryIndex index = indexFile != null && indexFile.length() > 0 ? new ExpiryIndex(Path.of(indexFile), OutputSink.fsync(arguments)) : null;
+        Path path = Path.of(source);
+        if (Files.isDirectory(path)) {
+            executeDirectory(path, index, now, horizon);
+        } else {
+            boolean archive = DimeArchive.isArchive(path);
+            if (index != null && !archive) {
+                DimeTool.showErrorMessage(this, "Option " + Option.INDEX + " requires " + Option.BATCH + " to be a directory or Dime archive.", true);
+                return null;
+            }
+            executeRecords(source, index, now, horizon);
+        }
+        if (index != null) {
+            index.save();
+        }
+        return null;
+    }
+
+    ///// PRIVATE /////
+
+    private void executeDirectory(Path directory, ExpiryIndex index, Instant now, Instant horizon) throws Exception {
+        BatchProcessor<Path> processor = BatchProcessor.fromArguments(arguments);
+        Path indexFile = index != null ? index.getFile() : null;
+        try (Stream<Path> files = Files.walk(directory);
+             OutputSink output = OutputSink.open(arguments, getOutputStream())) {
+            Iterator<Path> paths = files.filter(path -> Files.isRegularFile(path) && !path.getFileName().toString().startsWith(".")
+                    && !path.toAbsolutePath().equals(indexFile)).iterator();
+            process(processor, paths, path -> {
+                String name = path.toString();
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                long size = attributes.size();
+                long modified = attributes.lastModifiedTime().toMillis();
+                ExpiryIndex.Entry entry = index != null ? index.lookup(name, size, modified) : null;
+                if (entry == null) {
+                    entry = scan(name, Utility.readFile(path.toFile()), index, size, modified);
+                }
+                return ScanOperation.report(entry, now, horizon);
+            }, output);
+            output.commit();
+        }
+    }
+
+    // Archive entries are content-addressed by thumbprint, so an indexed entry never needs to be read again
+    private void executeRecords(String source, ExpiryIndex index, Instant now, Instant horizon) throws Exception {
+        BatchProcessor<RecordReader.Record> processor = BatchProcessor.fromArguments(arguments);
+        try (RecordReader reader = RecordReader.open(source);
+             OutputSink output = OutputSink.open(arguments, getOutputStream())) {
+            process(processor, reader, record -> {
+                ExpiryIndex.Entry entry = index != null ? index.lookup(record.name, ExpiryIndex.UNCHANGING, ExpiryIndex.UNCHANGING) : null;
+                if (entry == null) {
+                    entry = scan(record.name, record.value, index, ExpiryIndex.UNCHANGING, ExpiryIndex.UNCHANGING);
+                }
+                return ScanOperation.report(entry, now, horizon);
+            }, output);
+            output.commit();
+        }
+    }
+
+    // An envelope is valid only while all of its items are, so the latest issued at and earliest expires at are used
+    private static ExpiryIndex.Entry scan(String name, String encoded, ExpiryIndex index, long size, long modified) throws Exception {
+        List<ItemHeader> headers = Timings.time(Timings.IMPORT, () -> ItemHeader.decode(encoded));
+        if (headers.isEmpty()) {
+            throw new IllegalArgumentException("No items found.");
+        }
+        Instant issuedAt = null;
+        Instant expiresAt = null;
+        for (ItemHeader header: headers) {
+            Instant issued = header.getIssuedAt();
+            Instant expires = header.getExpiresAt();
+            if (issued != null && (issuedAt == null || issued.isAfter(issuedAt))) { issuedAt = issued; }
+            if (expires != null && (expiresAt == null || expires.isBefore(expiresAt))) { expiresAt = expires; }
+        }
+        String type = headers.size() == 1 ? headers.get(0).getType() : ItemHeader.ENVELOPE_HEADER;
+        if (index != null) {
+            return index.put(name, size, modified, type, issuedAt, expiresAt);
+        }
+        return new ExpiryIndex.Entry(name, size, modified, type, issuedAt, expiresAt);
+    }
+
+    // One line per item that is not valid now or expires before the horizon: name, state, type, issued at, expires at
+    private static String report(ExpiryIndex.Entry entry, Instant now, Instant horizon) {
+        String state;
+        if (entry.expiresAt != null && !entry.expiresAt.isAfter(now)) {
+            state = ScanOperation.STATE_EXPIRED;
+        } else if (entry.issuedAt != null && entry.issuedAt.isAfter(now)) {
+            state = ScanOperation.STATE_NOT_YET_VALID;
+        } else if (entry.expiresAt != null && entry.expiresAt.isBefore(horizon)) {
+            state = ScanOperation.STATE_EXPIRING;
+        } else {
+            return null;
+        }
+        return entry.name + "\t" + state + "\t" + entry.type + "\t" + (entry.issuedAt != null ? entry.issuedAt : "-") + "\t" + (entry.expiresAt != null ? entry.expiresAt : "-");
+    }
+
+}
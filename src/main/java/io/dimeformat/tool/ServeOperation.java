@@ -0,0 +1,175 @@
+//
+//  ServeOperation.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import io.dimeformat.Data;
+import io.dimeformat.Dime;
+import io.dimeformat.Item;
+import io.dimeformat.Key;
+import io.dimeformat.enums.KeyCapability;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class ServeOperation extends Operation {
+
+    public static final String NAME = "serve";
+
+    @Override
+    public String getDescription() {
+        return "Runs as a resident daemon that serves operations over a local Unix domain socket.";
+    }
+
+    @Override
+    public List<Option> getOptions() {
+        ArrayList<Option> array = new ArrayList<>();
+        Collections.addAll(array,
+                new Option(Option.POOL, false, "Number of pre-generated keys to keep ready per key specification, leave out to disable key pooling."),
+                new Option(Option.SOCKET, true, "Path of the Unix domain socket to listen on. Clients use the same path with " + Option.SOCKET + ", or through the " + DimeClient.SOCKET_ENVIRONMENT + " environment variable. Only the user running the daemon may connect, as clients run operations with its privileges."),
+                new Option(Option.WORKERS, false, "Number of clients that are served concurrently, defaults to number of processors."));
+        return array;
+    }
+
+    @Override
+    public boolean isDispatcher() {
+        return true;
+    }
+
+    @Override
+    public String execute() throws Exception {
+        String socketPath = arguments.get(Option.SOCKET);
+        if (socketPath == null || socketPath.length() == 0) {
+            DimeTool.showErrorMessage(this, "Missing required option: " + Option.SOCKET + ".", true);
+            return null;
+        }
+        Path path = Path.of(socketPath).toAbsolutePath();
+        if (Files.exists(path)) {
+            if (ServeOperation.isServing(path)) {
+                DimeTool.showErrorMessage(this, "A daemon is already serving on " + path + ".", false);
+                return null;
+            }
+            Files.delete(path); // Left behind by a daemon that did not shut down cleanly
+        }
+        int workers = (int) arguments.getLong(Option.WORKERS, Runtime.getRuntime().availableProcessors());
+        KeyPool.setPoolSize((int) arguments.getLong(Option.POOL, 0L));
+        warmUp();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, workers), runnable -> {
+            Thread thread = new Thread(runnable, "dimetool-serve");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            ServeOperation.bind(server, path);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> path.toFile().delete()));
+            while (server.isOpen()) {
+                SocketChannel channel = server.accept();
+                executor.execute(() -> serve(channel));
+            }
+        } finally {
+            executor.shutdownNow();
+            Files.deleteIfExists(path);
+        }
+        return null;
+    }
+
+    ///// PRIVATE /////
+
+    private static final int WARM_UP_ITERATIONS = 200;
+
+    private static boolean isServing(Path path) {
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            return channel.connect(UnixDomainSocketAddress.of(path));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Anyone who can connect runs operations with the privileges of the daemon, so the socket is only accessible to its
+    // owner. It is bound in a private directory, restricted, and then linked into place, so it is never accessible to
+    // others, and linking fails rather than replacing the socket of another daemon started meanwhile
+    private static void bind(ServerSocketChannel server, Path path) throws IOException {
+        if (!path.getFileSystem().supportedFileAttributeViews().contains("posix")) {
+            server.bind(UnixDomainSocketAddress.of(path));
+            return;
+        }
+        Path directory = Files.createTempDirectory(path.getParent(), ".dimetool-", PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+        Path temporary = directory.resolve(path.getFileName());
+        try {
+            server.bind(UnixDomainSocketAddress.of(temporary));
+            Files.setPosixFilePermissions(temporary, PosixFilePermissions.fromString("rw-------"));
+            Files.createLink(path, temporary);
+        } finally {
+            Files.deleteIfExists(temporary);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private void serve(SocketChannel channel) {
+        try (channel) {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            while (true) {
+                String[] args;
+                try {
+                    args = DaemonProtocol.readRequest(input);
+                } catch (EOFException e) {
+                    return; // Client is done
+                }
+                PrintStream out = DaemonProtocol.frameStream(output, DaemonProtocol.FRAME_OUT);
+                PrintStream err = DaemonProtocol.frameStream(output, DaemonProtocol.FRAME_ERR);
+                int status;
+                if (args.length > 0 && args[0].equals(ServeOperation.NAME)) {
+                    DimeTool.showErrorMessage(err, this, "Operation not allowed through daemon: '" + ServeOperation.NAME + "'.", false);
+                    status = -1;
+                } else {
+                    status = DimeTool.run(args, out, err);
+                }
+                out.flush();
+                err.flush();
+                DaemonProtocol.writeExit(output, status);
+            }
+        } catch (IOException e) {
+            /* ignore this, client went away */
+        }
+    }
+
+    private void warmUp() {
+        // Exercise the crypto provider and the hot import/sign/verify paths so the first client does not pay for
+        // class loading and interpretation
+        try {
+            for (int i = 0; i < ServeOperation.WARM_UP_ITERATIONS; i++) {
+                Key key = Key.generateKey(List.of(KeyCapability.SIGN), Dime.VALID_FOR_1_DAY, null, null, Dime.crypto.getDefaultSuiteName());
+                Data data = new Data(null);
+                data.setPayload(ServeOperation.NAME.getBytes(StandardCharsets.UTF_8), null);
+                data.sign(key);
+                Data importedData = Item.importFromEncoded(data.exportToEncoded());
+                Key importedKey = Item.importFromEncoded(key.exportToEncoded());
+                importedData.verify(importedKey);
+                importedData.generateThumbprint();
+            }
+        } catch (Exception e) {
+            /* ignore this, warm up is best effort */
+        }
+    }
+
+}
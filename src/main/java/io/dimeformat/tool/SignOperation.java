@@ -3,9 +3,14 @@ package io.dimeformat.tool;
 import io.dimeformat.Item;
 import io.dimeformat.Key;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 
 public class SignOperation extends Operation {
 
@@ -20,27 +25,154 @@ public class SignOperation extends Operation {
     public List<Option> getOptions() {
         ArrayList<Option> array = new ArrayList<>();
         Collections.addAll(array,
-                new Option(Option.ITEM, true, "Dime encoded item or envelope to sign."),
-                new Option(Option.KEY, true, "Dime encoded key to sign the item."));
+                new Option(Option.ITEM, false, "Dime encoded item or envelope to sign, required unless " + Option.BATCH + " or " + Option.ENVELOPE + " is used."),
+                new Option(Option.BATCH, false, "Directory with one item per file, file with newline-delimited items, or Dime archive, to sign, use '-' to read from stdin. Items already signed by the key are skipped."),
+                new Option(Option.ENVELOPE, false, "File with an anonymous Dime envelope whose items are signed in parallel, read and written item by item so that envelopes of any size can be signed, use '-' to read from stdin. Items already signed by the key are kept. If an item fails, output already written to stdout can not be discarded, use " + Option.OUT + " to write the envelope only if all items are signed."),
+                new Option(Option.IN_PLACE, false, "Replaces every file in the " + Option.BATCH + " directory with the signed item, instead of writing the items to output."),
+                new Option(Option.KEY, true, "Dime encoded key to sign the item."),
+                new Option(Option.ORDER, false, "Order of signed items when using " + Option.BATCH + ", defaults to input order.", List.of(BatchProcessor.ORDER_INPUT + "\t\t(same order as the input)", BatchProcessor.ORDER_COMPLETION + "\t(in order of completion)")),
+                new Option(Option.RESIGN, false, "Removes any existing signatures before signing, use to rotate the signing key."),
+                new Option(Option.WORKERS, false, "Number of worker threads to use with " + Option.BATCH + " or " + Option.ENVELOPE + ", defaults to number of processors."));
         return array;
     }
 
     @Override
     public String execute() throws Exception {
+        String encodedKey = arguments.get(Option.KEY);
+        if (encodedKey == null) {
+            DimeTool.showErrorMessage(this, "Missing required option: " + Option.KEY + ".", true);
+            return null;
+        }
+        Key key = Timings.time(Timings.IMPORT, () -> Item.importFromEncoded(encodedKey));
+        if (arguments.hasOption(Option.BATCH)) {
+            executeBatch(key);
+            return null;
+        }
+        if (arguments.hasOption(Option.ENVELOPE)) {
+            executeEnvelope(key);
+            return null;
+        }
         String encodedItem = arguments.get(Option.ITEM);
         if (encodedItem == null || encodedItem.length() == 0) {
             DimeTool.showErrorMessage(this, "Missing required option: " + Option.ITEM + ".", true);
             return null;
         }
-        Item item = Item.importFromEncoded(encodedItem);
-        String encodedKey = arguments.get(Option.KEY);
-        if (encodedKey == null) {
-            DimeTool.showErrorMessage(this, "Missing required option: " + Option.KEY + ".", true);
+        Item item = Timings.time(Timings.IMPORT, () -> Item.importFromEncoded(encodedItem));
+        if (arguments.hasOption(Option.RESIGN)) {
+            item.strip();
+        }
+        Timings.run(Timings.CRYPTO, () -> item.sign(key));
+        return Timings.time(Timings.EXPORT, item::exportToEncoded);
+    }
+
+    ///// PRIVATE /////
+
+    // Returns null if the item already carries a signature from the key, so that a rotation can be rerun
+    private String sign(String encodedItem, Key key, boolean resign) throws Exception {
+        Item item = Timings.time(Timings.IMPORT, () -> Item.importFromEncoded(encodedItem));
+        if (item.isSigned() && Timings.time(Timings.CRYPTO, () -> SignOperation.isSignedBy(encodedItem, key))) {
             return null;
         }
-        Key key = Item.importFromEncoded(encodedKey);
-        item.sign(key);
-        return item.exportToEncoded();
+        if (resign) {
+            item.strip();
+        }
+        Timings.run(Timings.CRYPTO, () -> item.sign(key));
+        return Timings.time(Timings.EXPORT, item::exportToEncoded);
+    }
+
+    // Signatures of the Dime suites (Ed25519) are deterministic, so an item signed by the key contains exactly the
+    // signature the key creates for it now. Unlike a verification, this does not fail for an item that has expired or is
+    // not yet valid, which would otherwise be signed again on every rerun
+    private static boolean isSignedBy(String encodedItem, Key key) throws Exception {
+        Item copy = Item.importFromEncoded(encodedItem);
+        copy.strip();
+        String unsigned = copy.exportToEncoded();
+        copy.sign(key);
+        String signed = copy.exportToEncoded();
+        if (!signed.startsWith(unsigned) || signed.length() <= unsigned.length() + 1) {
+            return false;
+        }
+        return encodedItem.contains(signed.substring(unsigned.length() + 1));
+    }
+
+    private void executeBatch(Key key) throws Exception {
+        String source = arguments.get(Option.BATCH);
+        boolean inPlace = arguments.hasOption(Option.IN_PLACE);
+        String fsync = OutputSink.fsync(arguments);
+        if (inPlace && !Files.isDirectory(Path.of(source))) {
+            DimeTool.showErrorMessage(this, "Option " + Option.IN_PLACE + " requires " + Option.BATCH + " to be a directory.", true);
+            return;
+        }
+        boolean resign = arguments.hasOption(Option.RESIGN);
+        LongAdder skipped = new LongAdder();
+        BatchProcessor<RecordReader.Record> processor = BatchProcessor.fromArguments(arguments);
+        try (RecordReader reader = RecordReader.open(source);
+             OutputSink output = OutputSink.open(arguments, getOutputStream())) {
+            process(processor, reader, record -> {
+                String signed = sign(record.value, key, resign);
+                if (signed == null) {
+                    skipped.increment();
+                }
+                if (!inPlace) {
+                    return OutputSink.itemRecord(arguments, signed != null ? signed : record.value);
+                }
+                if (signed != null) {
+                    Timings.run(Timings.OUTPUT, () -> OutputSink.writeFile(Path.of(source).resolve(record.name), fsync, signed));
+                }
+                return record.name + "\t" + (signed != null ? "signed" : "skipped");
+            }, output);
+            output.commit();
+        }
+        if (processor.getFailed() > 0) {
+            getErrorStream().println("[ERROR] Failed to sign " + processor.getFailed() + " of " + processor.getProcessed() + " items (" + skipped.sum() + " already signed).");
+        }
+    }
+
+    // The signed envelope is written section by section as items complete, in input order. An envelope signature
+    // covers all items and would have to be created from the whole envelope at once, so only anonymous envelopes are
+    // accepted, and nothing is committed if any item fails. Written to stdout, the sections already written can not be
+    // taken back, use --out to get all or nothing
+    private void executeEnvelope(Key key) throws Exception {
+        boolean resign = arguments.hasOption(Option.RESIGN);
+        int workers = (int) arguments.getLong(Option.WORKERS, Runtime.getRuntime().availableProcessors());
+        BatchProcessor<RecordReader.Record> processor = new BatchProcessor<>(workers, true);
+        try (EnvelopeReader envelope = EnvelopeReader.open(arguments.get(Option.ENVELOPE));
+             OutputSink output = OutputSink.open(arguments, getOutputStream())) {
+            if (!envelope.isAnonymous()) {
+                DimeTool.showErrorMessage(this, "Only anonymous envelopes can be signed with " + Option.ENVELOPE + ", sign the items before the envelope is signed.", false);
+                return;
+            }
+            output.writePart(envelope.getHeader());
+            process(processor, envelope, record -> {
+                String signed = sign(record.value, key, resign);
+                return (char) EnvelopeReader.SECTION_DELIMITER + EnvelopeReader.toSection(signed != null ? signed : record.value);
+            }, new SectionWriter(output));
+            if (processor.getFailed() > 0) {
+                getErrorStream().println("[ERROR] Failed to sign " + processor.getFailed() + " of " + processor.getProcessed() + " items, no envelope written.");
+                return;
+            }
+            output.writeRecord("");
+            output.commit();
+        }
+    }
+
+    // Passes the lines of a batch to the output as parts of one record
+    private static final class SectionWriter extends Writer {
+        private final OutputSink output;
+        SectionWriter(OutputSink output) {
+            this.output = output;
+        }
+        @Override
+        public void write(char[] buffer, int offset, int length) throws IOException {
+            if (length == 1 && buffer[offset] == '\n') { return; } // Line breaks between sections
+            this.output.writePart(new String(buffer, offset, length));
+        }
+        @Override
+        public void flush() throws IOException {
+            this.output.flush();
+        }
+        @Override
+        public void close() { }
     }
 
 }
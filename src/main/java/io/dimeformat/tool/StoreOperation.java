@@ -0,0 +1,109 @@
+//
+//  StoreOperation.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import io.dimeformat.Item;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+public class StoreOperation extends Operation {
+
+    public static final String NAME = "store";
+
+    @Override
+    public String getDescription() {
+        return "Stores Dime items by thumbprint, or looks up a stored item.";
+    }
+
+    @Override
+    public List<Option> getOptions() {
+        ArrayList<Option> array = new ArrayList<>();
+        Collections.addAll(array,
+                new Option(Option.STORE, true, "Directory of the item store, created if it does not exist."),
+                new Option(Option.INGEST, false, "File, or directory that is searched recursively, with one Dime encoded item per file to add to the store, unchanged files are skipped."),
+                new Option(Option.ITEM, false, "Dime encoded item to add to the store."),
+                new Option(Option.LOOKUP, false, "Thumbprint of the item to get from the store."),
+                new Option(Option.ORDER, false, "Order of result lines when using " + Option.INGEST + ", defaults to completion order.", List.of(BatchProcessor.ORDER_INPUT + "\t\t(same order as the input)", BatchProcessor.ORDER_COMPLETION + "\t(in order of completion)")),
+                new Option(Option.WORKERS, false, "Number of worker threads to use with " + Option.INGEST + ", defaults to number of processors."));
+        return array;
+    }
+
+    @Override
+    public boolean isExclusive() {
+        return !arguments.hasOption(Option.LOOKUP); // Appends to the source journal of the store
+    }
+
+    @Override
+    public String execute() throws Exception {
+        String directory = arguments.get(Option.STORE);
+        if (directory == null || directory.length() == 0) {
+            DimeTool.showErrorMessage(this, "Missing required option: " + Option.STORE + ".", true);
+            return null;
+        }
+        boolean lookup = arguments.hasOption(Option.LOOKUP);
+        try (ItemStore store = lookup ? ItemStore.openReadOnly(Path.of(directory)) : new ItemStore(Path.of(directory), OutputSink.fsync(arguments))) {
+            if (lookup) {
+                String encoded = store.get(arguments.get(Option.LOOKUP));
+                if (encoded == null) {
+                    DimeTool.showErrorMessage(this, "Item not found in store: " + arguments.get(Option.LOOKUP), false);
+                }
+                return encoded;
+            } else if (arguments.hasOption(Option.INGEST)) {
+                executeIngest(store, Path.of(arguments.get(Option.INGEST)));
+                return null;
+            }
+            String encodedItem = arguments.get(Option.ITEM);
+            if (encodedItem == null || encodedItem.length() == 0) {
+                DimeTool.showErrorMessage(this, "Missing required option: " + Option.INGEST + ", " + Option.ITEM + " or " + Option.LOOKUP + ".", true);
+                return null;
+            }
+            Item item = Timings.time(Timings.IMPORT, () -> Item.importFromEncoded(encodedItem));
+            String thumbprint = Timings.time(Timings.CRYPTO, item::generateThumbprint);
+            store.put(thumbprint, encodedItem);
+            return thumbprint;
+        }
+    }
+
+    ///// PRIVATE /////
+
+    // Files are thumbprinted in parallel, one line is written per new or changed file: path, thumbprint and whether
+    // the item was stored or already in the store
+    private void executeIngest(ItemStore store, Path source) throws Exception {
+        BatchProcessor<Path> processor = BatchProcessor.fromArguments(arguments, false);
+        LongAdder unchanged = new LongAdder();
+        try (Stream<Path> files = Files.walk(source);
+             OutputSink output = OutputSink.open(arguments, getOutputStream())) {
+            Iterator<Path> paths = files.filter(path -> !path.toAbsolutePath().normalize().startsWith(store.getDirectory()) && Files.isRegularFile(path)).iterator();
+            process(processor, paths, path -> {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                if (store.unchanged(path, attributes) != null) {
+                    unchanged.increment();
+                    return null;
+                }
+                String encoded = Utility.readFile(path.toFile()).trim();
+                Item item = Timings.time(Timings.IMPORT, () -> Item.importFromEncoded(encoded));
+                String thumbprint = Timings.time(Timings.CRYPTO, item::generateThumbprint);
+                boolean stored = store.put(thumbprint, encoded);
+                store.record(path, attributes, thumbprint);
+                return path + "\t" + thumbprint + "\t" + (stored ? "stored" : "duplicate");
+            }, output);
+            output.commit();
+        }
+        if (processor.getFailed() > 0) {
+            getErrorStream().println("[ERROR] Failed to store " + processor.getFailed() + " of " + (processor.getProcessed() - unchanged.sum()) + " new or changed files.");
+        }
+    }
+
+}
@@ -27,19 +27,60 @@ public class ThumbprintOperation extends Operation {
     public List<Option> getOptions() {
         ArrayList<Option> array = new ArrayList<>();
         Collections.addAll(array,
-                new Option(Option.ITEM, true, "Dime encoded item or envelope to generate a thumbprint for."));
+                new Option(Option.ITEM, true, "Dime encoded item or envelope to generate a thumbprint for, not used with " + Option.BATCH + " or " + Option.ENVELOPE + "."),
+                new Option(Option.BATCH, false, "Directory with one item per file, file with newline-delimited items, or Dime archive, to generate thumbprints for, use '-' to read from stdin."),
+                new Option(Option.ENVELOPE, false, "File with a Dime envelope to generate thumbprints for each of its items, read item by item so that envelopes of any size can be used, use '-' to read from stdin."),
+                new Option(Option.CACHE, false, "Directory where thumbprints are cached between invocations."),
+                new Option(Option.CACHE_SIZE, false, "Maximum number of thumbprints kept in the cache, defaults to " + ResultCache.DEFAULT_MAX_ENTRIES + "."),
+                new Option(Option.ORDER, false, "Order of result lines when using " + Option.BATCH + " or " + Option.ENVELOPE + ", defaults to input order.", List.of(BatchProcessor.ORDER_INPUT + "\t\t(same order as the input)", BatchProcessor.ORDER_COMPLETION + "\t(in order of completion)")),
+                new Option(Option.WORKERS, false, "Number of worker threads to use with " + Option.BATCH + " or " + Option.ENVELOPE + ", defaults to number of processors."));
         return array;
     }
 
     @Override
     public String execute() throws Exception {
+        if (arguments.hasOption(Option.BATCH) || arguments.hasOption(Option.ENVELOPE)) {
+            executeBatch();
+            return null;
+        }
         String encodedItem = arguments.get(Option.ITEM);
         if (encodedItem == null || encodedItem.length() == 0) {
             DimeTool.showErrorMessage(this, "Missing required option: " + Option.ITEM + ".", true);
             return null;
         }
-        Item item = Item.importFromEncoded(encodedItem);
-        return item.generateThumbprint();
+        ResultCache cache = ResultCache.open(arguments);
+        if (cache != null) {
+            String thumbprint = cache.thumbprint(encodedItem, () -> Timings.time(Timings.IMPORT, () -> Item.importFromEncoded(encodedItem)));
+            cache.save();
+            return thumbprint;
+        }
+        Item item = Timings.time(Timings.IMPORT, () -> Item.importFromEncoded(encodedItem));
+        return Timings.time(Timings.CRYPTO, item::generateThumbprint);
+    }
+
+    ///// PRIVATE /////
+
+    private void executeBatch() throws Exception {
+        ResultCache cache = ResultCache.open(arguments);
+        BatchProcessor<RecordReader.Record> processor = BatchProcessor.fromArguments(arguments);
+        try (RecordReader reader = RecordReader.open(arguments);
+             OutputSink output = OutputSink.open(arguments, getOutputStream())) {
+            process(processor, reader, record -> {
+                String thumbprint;
+                if (cache != null) {
+                    thumbprint = cache.thumbprint(record.value, () -> Timings.time(Timings.IMPORT, () -> Item.importFromEncoded(record.value)));
+                } else {
+                    Item item = Timings.time(Timings.IMPORT, () -> Item.importFromEncoded(record.value));
+                    thumbprint = Timings.time(Timings.CRYPTO, item::generateThumbprint);
+                }
+                return record.name + "\t" + thumbprint;
+            }, output);
+            output.commit();
+        } finally {
+            if (cache != null) {
+                cache.save();
+            }
+        }
     }
 
 }
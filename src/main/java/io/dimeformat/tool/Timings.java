@@ -0,0 +1,155 @@
+//
+//  Timings.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import jdk.jfr.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Per-phase timing of an invocation. Every phase is emitted as a JFR event (io.dimeformat.tool.Phase) and, if --timings
+// is given, aggregated per phase and reported as JSON. The context is inherited by worker threads created during the
+// invocation, so batch work is included.
+public final class Timings {
+
+    ///// PUBLIC /////
+
+    public static final String ARGUMENTS = "arguments";
+    public static final String IMPORT = "import";
+    public static final String CRYPTO = "crypto";
+    public static final String CHAIN = "chain";
+    public static final String EXPORT = "export";
+    public static final String OUTPUT = "output";
+    // The whole operation, it includes the time of all other phases run on the invoking thread
+    public static final String EXECUTE = "total";
+
+    public interface Timed<T> {
+        T call() throws Exception;
+    }
+
+    public interface TimedRunnable {
+        void run() throws Exception;
+    }
+
+    /// Context ///
+
+    public static Timings start(String operationName, boolean aggregate) {
+        Timings timings = new Timings(operationName, aggregate);
+        Timings.current.set(timings);
+        return timings;
+    }
+
+    public static void stop() {
+        Timings.current.remove();
+    }
+
+    /// Phases ///
+
+    // Without --timings or a JFR recording of the phase event the task is only called, nothing is measured
+    public static <T> T time(String phase, Timed<T> task) throws Exception {
+        Timings timings = Timings.current.get();
+        if ((timings == null || !timings.aggregate) && !Timings.phaseEvents.isEnabled()) {
+            return task.call();
+        }
+        PhaseEvent event = new PhaseEvent();
+        long allocated = Timings.allocatedBytes();
+        long start = System.nanoTime();
+        event.begin();
+        try {
+            return task.call();
+        } finally {
+            event.end();
+            long duration = System.nanoTime() - start;
+            allocated = Timings.allocatedBytes() - allocated;
+            if (event.shouldCommit()) {
+                event.operation = timings != null ? timings.operationName : null;
+                event.phase = phase;
+                event.allocated = allocated;
+                event.commit();
+            }
+            if (timings != null && timings.aggregate) {
+                timings.phases.computeIfAbsent(phase, p -> new Phase()).add(duration, allocated);
+            }
+        }
+    }
+
+    public static void run(String phase, TimedRunnable task) throws Exception {
+        Timings.time(phase, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /// Report ///
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"operation\":\"").append(this.operationName).append("\",\"phases\":{");
+        boolean first = true;
+        for (Map.Entry<String, Phase> entry: this.phases.entrySet()) {
+            if (!first) { json.append(','); }
+            first = false;
+            Phase phase = entry.getValue();
+            json.append('"').append(entry.getKey()).append("\":{")
+                    .append("\"count\":").append(phase.count.sum())
+                    .append(",\"nanos\":").append(phase.nanos.sum())
+                    .append(",\"allocatedBytes\":").append(phase.allocated.sum())
+                    .append('}');
+        }
+        return json.append("}}").toString();
+    }
+
+    ///// PRIVATE /////
+
+    private static final InheritableThreadLocal<Timings> current = new InheritableThreadLocal<>();
+    private static final EventType phaseEvents = EventType.getEventType(PhaseEvent.class);
+    private static final com.sun.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean ? (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean() : null;
+
+    private final String operationName;
+    private final boolean aggregate;
+    private final Map<String, Phase> phases = new ConcurrentSkipListMap<>();
+
+    private Timings(String operationName, boolean aggregate) {
+        this.operationName = operationName;
+        this.aggregate = aggregate;
+    }
+
+    private static long allocatedBytes() {
+        return Timings.threads != null ? Timings.threads.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0L;
+    }
+
+    private static final class Phase {
+        final LongAdder count = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final LongAdder allocated = new LongAdder();
+        void add(long duration, long allocatedBytes) {
+            this.count.increment();
+            this.nanos.add(duration);
+            this.allocated.add(allocatedBytes);
+        }
+    }
+
+    @Name("io.dimeformat.tool.Phase")
+    @Label("DimeTool Phase")
+    @Category("DimeTool")
+    @StackTrace(false)
+    static final class PhaseEvent extends Event {
+        @Label("Operation")
+        String operation;
+        @Label("Phase")
+        String phase;
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+    }
+
+}
@@ -0,0 +1,87 @@
+//
+//  TrustOperation.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import io.dimeformat.Identity;
+import io.dimeformat.Item;
+
+import java.util.*;
+
+public class TrustOperation extends Operation {
+
+    public static final String NAME = "trust";
+
+    @Override
+    public String getDescription() {
+        return "Adds identities to, or looks up identities in, a trust store.";
+    }
+
+    @Override
+    public List<Option> getOptions() {
+        ArrayList<Option> array = new ArrayList<>();
+        Collections.addAll(array,
+                new Option(Option.TRUSTSTORE, true, "Directory of the trust store, created if it does not exist."),
+                new Option(Option.ITEM, false, "Dime encoded identity to add to the trust store."),
+                new Option(Option.BATCH, false, "Directory with one identity per file, or file with newline-delimited identities, to add to the trust store, use '-' to read from stdin."),
+                new Option(Option.ISS, false, "Lists identities in the trust store issued by the given issuer (UUID)."),
+                new Option(Option.SUB, false, "Lists identities in the trust store with the given subject id (UUID)."));
+        return array;
+    }
+
+    @Override
+    public String execute() throws Exception {
+        TrustStore store = TrustStore.open(arguments);
+        if (store == null) {
+            DimeTool.showErrorMessage(this, "Missing required option: " + Option.TRUSTSTORE + ".", true);
+            return null;
+        }
+        List<TrustStore.Entry> entries;
+        if (arguments.hasOption(Option.ITEM) || arguments.hasOption(Option.BATCH)) {
+            List<Identity> identities = new ArrayList<>();
+            String encodedItem = arguments.get(Option.ITEM);
+            if (encodedItem != null && encodedItem.length() > 0) {
+                identities.add(importIdentity(encodedItem));
+            }
+            if (arguments.hasOption(Option.BATCH)) {
+                try (RecordReader reader = RecordReader.open(arguments.get(Option.BATCH))) {
+                    while (reader.hasNext()) {
+                        identities.add(importIdentity(reader.next().read()));
+                    }
+                }
+            }
+            List<String> added = store.add(identities, OutputSink.fsync(arguments));
+            return added.isEmpty() ? null : String.join("\n", added);
+        } else if (arguments.hasOption(Option.SUB)) {
+            entries = store.findBySubject(arguments.getUUID(Option.SUB));
+        } else if (arguments.hasOption(Option.ISS)) {
+            entries = store.findByIssuer(arguments.getUUID(Option.ISS));
+        } else {
+            DimeTool.showErrorMessage(this, "Missing required option: " + Option.ITEM + ", " + Option.BATCH + ", " + Option.SUB + " or " + Option.ISS + ".", true);
+            return null;
+        }
+        StringBuilder output = new StringBuilder();
+        for (TrustStore.Entry entry: entries) {
+            if (output.length() > 0) { output.append('\n'); }
+            output.append(entry.thumbprint).append('\t').append(entry.subjectId).append('\t').append(entry.issuerId != null ? entry.issuerId.toString() : "-");
+        }
+        return output.length() > 0 ? output.toString() : null;
+    }
+
+    ///// PRIVATE /////
+
+    private Identity importIdentity(String encoded) throws Exception {
+        Item item = Timings.time(Timings.IMPORT, () -> Item.importFromEncoded(encoded));
+        if (!(item instanceof Identity)) {
+            throw new IllegalArgumentException("Only identities may be added to a trust store.");
+        }
+        return (Identity) item;
+    }
+
+}
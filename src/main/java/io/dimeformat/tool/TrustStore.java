@@ -0,0 +1,369 @@
+//
+//  TrustStore.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import io.dimeformat.Identity;
+import io.dimeformat.Item;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Directory of trusted identities, stored as items/<thumbprint>.dime, with a binary index that is memory-mapped and
+// binary searched by subject id, issuer id or thumbprint. Layout of the index (big-endian):
+//   header:       magic, version, count (int), generation (long)
+//   records:      subject id, issuer id (2 x 2 longs), thumbprint hash (long), thumbprint offset (int)
+//   bySubject:    record numbers (int) sorted by subject id
+//   byIssuer:     record numbers (int) sorted by issuer id
+//   byThumbprint: record numbers (int) sorted by thumbprint hash
+//   thumbprints:  length (short) and UTF-8 bytes
+// The generation is incremented every time the index is rewritten. Updates are made holding a lock on the lock file, so
+// processes sharing the directory add to the latest index instead of replacing each other's additions.
+public final class TrustStore {
+
+    ///// PUBLIC /////
+
+    public static final class Entry {
+        public final UUID subjectId;
+        public final UUID issuerId;
+        public final String thumbprint;
+        private final TrustStore store;
+        Entry(TrustStore store, UUID subjectId, UUID issuerId, String thumbprint) {
+            this.store = store;
+            this.subjectId = subjectId;
+            this.issuerId = issuerId;
+            this.thumbprint = thumbprint;
+        }
+        public Identity identity() throws Exception {
+            return this.store.load(this.thumbprint);
+        }
+    }
+
+    // Returns the trust store given by --truststore, or null if no trust store is used. Stores are shared within the
+    // process and re-mapped if the generation of the index has changed since it was opened
+    public static TrustStore open(Arguments arguments) throws IOException {
+        String directory = arguments.get(Option.TRUSTSTORE);
+        if (directory == null || directory.length() == 0) {
+            return null;
+        }
+        return TrustStore.open(Path.of(directory));
+    }
+
+    public static TrustStore open(Path directory) throws IOException {
+        Path path = directory.toAbsolutePath().normalize();
+        long generation = TrustStore.generation(path.resolve(TrustStore.INDEX_FILE));
+        synchronized (TrustStore.stores) {
+            TrustStore store = TrustStore.stores.get(path);
+            if (store == null || store.generation != generation) {
+                store = new TrustStore(path);
+                TrustStore.stores.put(path, store);
+            }
+            return store;
+        }
+    }
+
+    public int size() {
+        return this.count;
+    }
+
+    /// Lookup ///
+
+    public List<Entry> findBySubject(UUID subjectId) {
+        return find(TrustStore.BY_SUBJECT, record -> compare(uuidAt(record, 0), subjectId));
+    }
+
+    public List<Entry> findByIssuer(UUID issuerId) {
+        return find(TrustStore.BY_ISSUER, record -> compare(uuidAt(record, 16), issuerId));
+    }
+
+    public Entry findByThumbprint(String thumbprint) {
+        long hash = Utility.hash64(thumbprint);
+        for (Entry entry: find(TrustStore.BY_THUMBPRINT, record -> Long.compare(this.index.getLong(record + 32), hash))) {
+            if (entry.thumbprint.equals(thumbprint)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    // Resolves a subject id (UUID) or a thumbprint given instead of an encoded identity, returns null if the value is
+    // neither or if it is not found in the store
+    public Identity resolve(String value) throws Exception {
+        if (value == null) { return null; }
+        try {
+            List<Entry> entries = findBySubject(UUID.fromString(value));
+            return entries.isEmpty() ? null : entries.get(entries.size() - 1).identity();
+        } catch (IllegalArgumentException e) {
+            /* ignore this, not a UUID */
+        }
+        Entry entry = findByThumbprint(value);
+        return entry != null ? entry.identity() : null;
+    }
+
+    // Trusted identities that may verify the item: the issuer of the item, or of the closest link in its trust chain
+    // that has an issuer in the store
+    public List<Entry> verifiersFor(Item item) {
+        for (Item link = item; link != null; link = link instanceof Identity ? ((Identity) link).getTrustChain() : null) {
+            UUID issuerId = link.getIssuerId();
+            if (issuerId == null) { break; }
+            List<Entry> entries = findBySubject(issuerId);
+            if (!entries.isEmpty()) {
+                return entries;
+            }
+        }
+        return List.of();
+    }
+
+    /// Update ///
+
+    // Adds identities to the store and rewrites the index once, returns the thumbprints of the identities added. The
+    // index is read again under the lock, so identities added by others since this store was opened are kept
+    public List<String> add(List<Identity> identities) throws Exception {
+        return add(identities, OutputSink.FSYNC_NONE);
+    }
+
+    // Identity files and the index are written following the given --fsync policy
+    public List<String> add(List<Identity> identities, String fsync) throws Exception {
+        Files.createDirectories(this.directory);
+        synchronized (TrustStore.updates) {
+            try (FileChannel lockFile = FileChannel.open(this.directory.resolve(TrustStore.LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock ignored = lockFile.lock()) {
+                TrustStore current = TrustStore.generation(this.directory.resolve(TrustStore.INDEX_FILE)) == this.generation ? this : new TrustStore(this.directory);
+                List<String> added = current.addLocked(identities, fsync);
+                if (!added.isEmpty()) {
+                    synchronized (TrustStore.stores) {
+                        TrustStore.stores.remove(this.directory);
+                    }
+                }
+                return added;
+            }
+        }
+    }
+
+    ///// PRIVATE /////
+
+    private static final String INDEX_FILE = "index";
+    private static final String LOCK_FILE = "lock";
+    private static final String ITEMS_DIRECTORY = "items";
+    private static final String ITEM_SUFFIX = ".dime";
+    private static final int MAGIC = 0x44545331; // "DTS1"
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 20;
+    private static final int RECORD_SIZE = 44;
+    private static final int BY_SUBJECT = 0;
+    private static final int BY_ISSUER = 1;
+    private static final int BY_THUMBPRINT = 2;
+    private static final UUID NO_ISSUER = new UUID(0L, 0L);
+    private static final Map<Path, TrustStore> stores = new HashMap<>();
+    // A file lock is held by the process, threads updating a store are serialized by this lock first
+    private static final Object updates = new Object();
+
+    private final Path directory;
+    private final long generation;
+    private final ByteBuffer index;
+    private final int count;
+    private final Map<String, Identity> identities = new ConcurrentHashMap<>();
+
+    private static final class Record {
+        final UUID subjectId;
+        final UUID issuerId;
+        final String thumbprint;
+        final long hash;
+        Record(UUID subjectId, UUID issuerId, String thumbprint) {
+            this.subjectId = subjectId;
+            this.issuerId = issuerId != null ? issuerId : TrustStore.NO_ISSUER;
+            this.thumbprint = thumbprint;
+            this.hash = Utility.hash64(thumbprint);
+        }
+    }
+
+    private interface RecordComparator {
+        int compare(int recordOffset);
+    }
+
+    private TrustStore(Path directory) throws IOException {
+        this.directory = directory;
+        Path indexFile = directory.resolve(TrustStore.INDEX_FILE);
+        if (!Files.isRegularFile(indexFile)) {
+            this.index = ByteBuffer.allocate(0);
+            this.count = 0;
+            this.generation = 0L;
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (!TrustStore.isValidHeader(buffer)) {
+                throw new IOException("Invalid trust store index: " + indexFile);
+            }
+            this.index = buffer;
+            this.count = buffer.getInt(8);
+            this.generation = buffer.getLong(12);
+        }
+    }
+
+    private static boolean isValidHeader(ByteBuffer buffer) {
+        return buffer.limit() >= TrustStore.HEADER_SIZE && buffer.getInt(0) == TrustStore.MAGIC && buffer.getInt(4) == TrustStore.VERSION;
+    }
+
+    // Reads only the header of the index, 0 if there is no index
+    private static long generation(Path file) throws IOException {
+        if (!Files.isRegularFile(file)) { return 0L; }
+        ByteBuffer header = ByteBuffer.allocate(TrustStore.HEADER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (header.hasRemaining() && channel.read(header) >= 0) { /* read the whole header */ }
+        } catch (NoSuchFileException e) {
+            return 0L;
+        }
+        header.flip();
+        if (!TrustStore.isValidHeader(header)) {
+            throw new IOException("Invalid trust store index: " + file);
+        }
+        return header.getLong(12);
+    }
+
+    private List<String> addLocked(List<Identity> identities, String fsync) throws Exception {
+        Path items = this.directory.resolve(TrustStore.ITEMS_DIRECTORY);
+        Files.createDirectories(items);
+        List<Record> records = new ArrayList<>(this.count + identities.size());
+        Set<String> existing = new HashSet<>();
+        for (int i = 0; i < this.count; i++) {
+            Entry entry = entryAt(i);
+            records.add(new Record(entry.subjectId, entry.issuerId, entry.thumbprint));
+            existing.add(entry.thumbprint);
+        }
+        List<String> added = new ArrayList<>();
+        for (Identity identity: identities) {
+            String thumbprint = identity.generateThumbprint();
+            if (!existing.add(thumbprint)) { continue; }
+            Path file = items.resolve(thumbprint + TrustStore.ITEM_SUFFIX);
+            OutputSink.writeFile(file, fsync, identity.exportToEncoded());
+            records.add(new Record(identity.getSubjectId(), identity.getIssuerId(), thumbprint));
+            added.add(thumbprint);
+        }
+        if (!added.isEmpty()) {
+            writeIndex(records, this.generation + 1, fsync);
+        }
+        return added;
+    }
+
+    private Identity load(String thumbprint) throws Exception {
+        Identity identity = this.identities.get(thumbprint);
+        if (identity == null) {
+            String encoded = Utility.readFile(this.directory.resolve(TrustStore.ITEMS_DIRECTORY).resolve(thumbprint + TrustStore.ITEM_SUFFIX).toFile());
+            identity = Timings.time(Timings.IMPORT, () -> Item.importFromEncoded(encoded));
+            this.identities.put(thumbprint, identity);
+        }
+        return identity;
+    }
+
+    /// Index ///
+
+    private int recordOffset(int record) {
+        return TrustStore.HEADER_SIZE + record * TrustStore.RECORD_SIZE;
+    }
+
+    private int sortedRecord(int section, int position) {
+        return this.index.getInt(TrustStore.HEADER_SIZE + this.count * TrustStore.RECORD_SIZE + (section * this.count + position) * 4);
+    }
+
+    private UUID uuidAt(int recordOffset, int field) {
+        return new UUID(this.index.getLong(recordOffset + field), this.index.getLong(recordOffset + field + 8));
+    }
+
+    private Entry entryAt(int record) {
+        int offset = recordOffset(record);
+        int thumbprintOffset = this.index.getInt(offset + 40);
+        byte[] thumbprint = new byte[this.index.getShort(thumbprintOffset) & 0xFFFF];
+        this.index.get(thumbprintOffset + 2, thumbprint);
+        UUID issuerId = uuidAt(offset, 16);
+        return new Entry(this, uuidAt(offset, 0), issuerId.equals(TrustStore.NO_ISSUER) ? null : issuerId, new String(thumbprint, StandardCharsets.UTF_8));
+    }
+
+    // Binary search for the first match, then collects all adjacent matches
+    private List<Entry> find(int section, RecordComparator comparator) {
+        int low = 0;
+        int high = this.count - 1;
+        int first = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int result = comparator.compare(recordOffset(sortedRecord(section, middle)));
+            if (result < 0) {
+                low = middle + 1;
+            } else {
+                if (result == 0) { first = middle; }
+                high = middle - 1;
+            }
+        }
+        if (first < 0) {
+            return List.of();
+        }
+        List<Entry> entries = new ArrayList<>(1);
+        for (int position = first; position < this.count; position++) {
+            int record = sortedRecord(section, position);
+            if (comparator.compare(recordOffset(record)) != 0) { break; }
+            entries.add(entryAt(record));
+        }
+        return entries;
+    }
+
+    private static int compare(UUID a, UUID b) {
+        int result = Long.compare(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return result != 0 ? result : Long.compare(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    }
+
+    private void writeIndex(List<Record> records, long generation, String fsync) throws IOException {
+        int count = records.size();
+        Integer[] bySubject = new Integer[count];
+        Integer[] byIssuer = new Integer[count];
+        Integer[] byThumbprint = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            bySubject[i] = byIssuer[i] = byThumbprint[i] = i;
+        }
+        Arrays.sort(bySubject, (a, b) -> compare(records.get(a).subjectId, records.get(b).subjectId));
+        Arrays.sort(byIssuer, (a, b) -> compare(records.get(a).issuerId, records.get(b).issuerId));
+        Arrays.sort(byThumbprint, (a, b) -> Long.compare(records.get(a).hash, records.get(b).hash));
+        Path file = this.directory.resolve(TrustStore.INDEX_FILE);
+        OutputSink.writeFile(file, fsync, true, stream -> {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024));
+            output.writeInt(TrustStore.MAGIC);
+            output.writeInt(TrustStore.VERSION);
+            output.writeInt(count);
+            output.writeLong(generation);
+            int thumbprintOffset = TrustStore.HEADER_SIZE + count * (TrustStore.RECORD_SIZE + 3 * 4);
+            for (Record record: records) {
+                output.writeLong(record.subjectId.getMostSignificantBits());
+                output.writeLong(record.subjectId.getLeastSignificantBits());
+                output.writeLong(record.issuerId.getMostSignificantBits());
+                output.writeLong(record.issuerId.getLeastSignificantBits());
+                output.writeLong(record.hash);
+                output.writeInt(thumbprintOffset);
+                thumbprintOffset += 2 + record.thumbprint.getBytes(StandardCharsets.UTF_8).length;
+            }
+            for (Integer[] section: List.of(bySubject, byIssuer, byThumbprint)) {
+                for (Integer record: section) {
+                    output.writeInt(record);
+                }
+            }
+            for (Record record: records) {
+                byte[] thumbprint = record.thumbprint.getBytes(StandardCharsets.UTF_8);
+                output.writeShort(thumbprint.length);
+                output.write(thumbprint);
+            }
+            output.flush();
+        });
+    }
+
+}
@@ -10,28 +10,53 @@
 package io.dimeformat.tool;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 public class Utility {
 
     public static String readFile(File file) throws IOException {
-        BufferedReader br = new BufferedReader(new FileReader(file));
-        StringBuilder builder = new StringBuilder();
-        String str;
-        while ((str = br.readLine()) != null) {
-            builder.append(str);
+        byte[] bytes = Utility.readBytes(file);
+        int length = 0; // Line breaks are not part of an encoded item, drop them while keeping all other bytes as is
+        for (byte b: bytes) {
+            if (b != '\n' && b != '\r') {
+                bytes[length++] = b;
+            }
         }
-        return builder.toString();
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
     }
 
-    public static void outputFile(String encoded, String filename) throws IOException {
-        BufferedWriter bwr = new BufferedWriter(new FileWriter(filename));
-        bwr.write(encoded);
-        bwr.flush();
-        bwr.close();
+    public static byte[] readBytes(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Utility.MAX_ARRAY_SIZE) {
+                throw new IOException("File too large to read: " + file.getPath());
+            }
+            byte[] bytes = new byte[(int) size];
+            if (size >= Utility.MAP_THRESHOLD) {
+                channel.map(FileChannel.MapMode.READ_ONLY, 0, size).get(bytes);
+            } else {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) { /* keep reading */ }
+            }
+            return bytes;
+        }
     }
 
-    public static void outputScreen(String encoded) {
-        System.out.println(encoded);
+    // 64-bit FNV-1a
+    public static long hash64(String string) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < string.length(); i++) {
+            hash ^= string.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
     }
 
+    private static final int MAP_THRESHOLD = 1 << 20;
+    private static final long MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
 }
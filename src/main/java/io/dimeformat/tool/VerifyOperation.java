@@ -33,24 +33,40 @@ public class VerifyOperation extends Operation {
     public List<Option> getOptions() {
         ArrayList<Option> array = new ArrayList<>();
         Collections.addAll(array,
-                new Option(Option.ITEM, true, "Dime encoded item or envelope that should be verified."),
+                new Option(Option.ITEM, false, "Dime encoded item or envelope that should be verified, required unless " + Option.BATCH + " or " + Option.ENVELOPE + " is used."),
+                new Option(Option.BATCH, false, "File with newline-delimited Dime encoded items, directory with one item per file, or Dime archive, to verify, use '-' to read from stdin."),
+                new Option(Option.ENVELOPE, false, "File with a Dime envelope whose items are verified in parallel, read item by item so that envelopes of any size can be verified, use '-' to read from stdin. The signature of the envelope itself is not verified."),
+                new Option(Option.CACHE, false, "Directory where thumbprints and verification results are cached between invocations."),
+                new Option(Option.CACHE_SIZE, false, "Maximum number of entries of each kind kept in the cache, defaults to " + ResultCache.DEFAULT_MAX_ENTRIES + "."),
                 new Option(Option.GRACE_PERIOD, false, "Specifies a grace period in seconds that should be used when verifying dates."),
+                new Option(Option.ORDER, false, "Order of result lines when using " + Option.BATCH + " or " + Option.ENVELOPE + ", defaults to input order.", List.of(BatchProcessor.ORDER_INPUT + "\t\t(same order as the input)", BatchProcessor.ORDER_COMPLETION + "\t(in order of completion)")),
                 new Option(Option.SET_DATE, false, "Overrides the current system time and uses the provided date for verification, should be provided in RFC 3339 format."),
-                new Option(Option.VERIFIER, true, "Dime encoded key or identity that should or envelope that should be verified."));
+                new Option(Option.TRUSTSTORE, false, "Trust store directory, the verifier of each item is selected from the store if " + Option.VERIFIER + " is omitted."),
+                new Option(Option.VERIFIER, true, "Dime encoded key or identity that should or envelope that should be verified, or subject id (UUID) or thumbprint of an identity in the trust store."),
+                new Option(Option.WORKERS, false, "Number of worker threads to use with " + Option.BATCH + " or " + Option.ENVELOPE + ", defaults to number of processors."));
         return array;
     }
 
     @Override
-    public String execute() throws Exception {
+    public boolean isExclusive() {
+        return arguments.hasOption(Option.SET_DATE) || arguments.hasOption(Option.GRACE_PERIOD); // Changes global Dime settings
+    }
 
-        String encodedItem = arguments.get(Option.ITEM);
-        if (encodedItem == null || encodedItem.length() == 0) {
-            DimeTool.showErrorMessage(this, "Missing required option: " + Option.ITEM + ".", true);
-            return null;
-        }
-        Item item = Item.importFromEncoded(encodedItem);
+    @Override
+    public String execute() throws Exception {
+        TrustStore store = TrustStore.open(arguments);
         String encodedVerifier = arguments.get(Option.VERIFIER);
-        if (encodedVerifier == null || encodedVerifier.length() == 0) {
+        Item verifier = null;
+        if (encodedVerifier != null && encodedVerifier.length() > 0) {
+            verifier = store != null ? store.resolve(encodedVerifier) : null;
+            if (verifier == null) {
+                verifier = Timings.time(Timings.IMPORT, () -> Item.importFromEncoded(encodedVerifier));
+            }
+            if (!(verifier instanceof Key) && !(verifier instanceof Identity)) {
+                DimeTool.showErrorMessage(this, "Unsupported Dime item: " + Option.VERIFIER + ".", true);
+                return null;
+            }
+        } else if (store == null) {
             DimeTool.showErrorMessage(this, "Missing required option: " + Option.VERIFIER + ".", true);
             return null;
         }
@@ -62,18 +78,121 @@ public class VerifyOperation extends Operation {
         if (gracePeriod != 0L) {
             Dime.setGracePeriod(gracePeriod);
         }
-        IntegrityState state;
-        Item verifier = Item.importFromEncoded(encodedVerifier);
-        Key verifyingKey;
+        ResultCache cache = ResultCache.open(arguments);
+        try {
+            if (arguments.hasOption(Option.BATCH) || arguments.hasOption(Option.ENVELOPE)) {
+                executeBatch(new Context(verifier, store, cache != null ? cache : ResultCache.inMemory(), overrideTime, gracePeriod));
+                return null;
+            }
+            String encodedItem = arguments.get(Option.ITEM);
+            if (encodedItem == null || encodedItem.length() == 0) {
+                DimeTool.showErrorMessage(this, "Missing required option: " + Option.ITEM + ".", true);
+                return null;
+            }
+            if (cache != null || verifier == null) {
+                return verify(encodedItem, new Context(verifier, store, cache != null ? cache : ResultCache.inMemory(), overrideTime, gracePeriod)).state.toString();
+            }
+            Item item = Timings.time(Timings.IMPORT, () -> Item.importFromEncoded(encodedItem));
+            return verify(item, verifier).toString();
+        } finally {
+            if (overrideTime != null) {
+                Dime.setOverrideTime(null);
+            }
+            if (gracePeriod != 0L) {
+                Dime.setGracePeriod(0L);
+            }
+            if (cache != null) {
+                cache.save();
+            }
+        }
+    }
+
+    ///// PRIVATE /////
+
+    // Verifying against an identity includes walking the trust chain, which is timed as its own phase
+    private IntegrityState verify(Item item, Item verifier) throws Exception {
         if (verifier instanceof Key) {
-            state = item.verify((Key) verifier);
-        } else if (verifier instanceof Identity) {
-            state = item.verify((Identity) verifier);
-        } else {
-            DimeTool.showErrorMessage(this, "Unsupported Dime item: " + Option.VERIFIER + ".", true);
-            return null;
+            return Timings.time(Timings.CRYPTO, () -> item.verify((Key) verifier));
+        }
+        return Timings.time(Timings.CHAIN, () -> item.verify((Identity) verifier));
+    }
+
+    private static final class Context {
+        final Item verifier;
+        final String verifierThumbprint;
+        final TrustStore store;
+        final ResultCache cache;
+        final Instant time;
+        final long gracePeriod;
+        Context(Item verifier, TrustStore store, ResultCache cache, Instant overrideTime, long gracePeriod) throws Exception {
+            this.verifier = verifier;
+            this.verifierThumbprint = verifier != null ? Timings.time(Timings.CRYPTO, verifier::generateThumbprint) : null;
+            this.store = store;
+            this.cache = cache;
+            this.time = overrideTime != null ? overrideTime : Instant.now();
+            this.gracePeriod = gracePeriod;
+        }
+    }
+
+    private static final class Result {
+        final String thumbprint;
+        final IntegrityState state;
+        Result(String thumbprint, IntegrityState state) {
+            this.thumbprint = thumbprint;
+            this.state = state;
+        }
+    }
+
+    // The item is only imported if its thumbprint or its verification result is not already cached. Without a given
+    // verifier, the issuers of the item are looked up in the trust store and tried until one verifies the item
+    private Result verify(String encodedItem, Context context) throws Exception {
+        Item[] item = new Item[1];
+        ResultCache.ItemSource source = () -> {
+            if (item[0] == null) {
+                item[0] = Timings.time(Timings.IMPORT, () -> Item.importFromEncoded(encodedItem));
+            }
+            return item[0];
+        };
+        String thumbprint = context.cache.thumbprint(encodedItem, source);
+        if (context.verifier != null) {
+            return new Result(thumbprint, verify(source, thumbprint, context.verifier, context.verifierThumbprint, context));
+        }
+        List<TrustStore.Entry> verifiers = context.store.verifiersFor(source.get());
+        if (verifiers.isEmpty()) {
+            throw new IllegalStateException("No verifier for item found in trust store.");
+        }
+        IntegrityState state = null;
+        for (TrustStore.Entry entry: verifiers) {
+            state = verify(source, thumbprint, entry.identity(), entry.thumbprint, context);
+            if (state.isValid()) { break; }
+        }
+        return new Result(thumbprint, state);
+    }
+
+    // Every item is verified in full against the verifier, so that an item gets the same state in a batch as on its
+    // own, and the result is cached by item and verifier
+    private IntegrityState verify(ResultCache.ItemSource source, String thumbprint, Item verifier, String verifierThumbprint, Context context) throws Exception {
+        ResultCache.Verification cached = context.cache.lookup(thumbprint, verifierThumbprint, context.gracePeriod, context.time);
+        if (cached != null) {
+            return cached.state;
+        }
+        Item item = source.get();
+        IntegrityState state = verify(item, verifier);
+        context.cache.store(thumbprint, verifierThumbprint, context.gracePeriod, context.time, state, item, verifier);
+        return state;
+    }
+
+    private void executeBatch(Context context) throws Exception {
+        BatchProcessor<RecordReader.Record> processor = BatchProcessor.fromArguments(arguments);
+        processor.setErrorLines(true);
+        try (RecordReader reader = RecordReader.open(arguments);
+             OutputSink output = OutputSink.open(arguments, getOutputStream())) {
+            process(processor, reader, record -> {
+                Result result = verify(record.value, context);
+                return record.name + "\t" + result.thumbprint + "\t" + result.state;
+            }, output);
+            output.commit();
         }
-        return state.toString();
     }
 
 }
@@ -0,0 +1,279 @@
+//
+//  WatchOperation.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import io.dimeformat.Identity;
+import io.dimeformat.IdentityIssuingRequest;
+import io.dimeformat.Item;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class WatchOperation extends Operation {
+
+    public static final String NAME = "watch";
+
+    public static final String DONE_DIRECTORY = ".done";
+    public static final String FAILED_DIRECTORY = ".failed";
+
+    @Override
+    public String getDescription() {
+        return "Watches a spool directory for IIRs and issues identities as soon as they arrive, runs until stopped.";
+    }
+
+    @Override
+    public List<Option> getOptions() {
+        ArrayList<Option> array = new ArrayList<>();
+        Collections.addAll(array,
+                new Option(Option.SPOOL, true, "Directory to watch for IIR files, one IIR per file. Files should be written under a name starting with '.' and renamed into place, such files are ignored, files written in place are picked up once their size is stable. Handled files are moved to " + WatchOperation.DONE_DIRECTORY + " or " + WatchOperation.FAILED_DIRECTORY + " within the directory."),
+                new Option(Option.OUT_DIR, true, "Directory the issued identities are written to, named after the thumbprint of the IIR. An IIR that already has an identity there is not issued again, whatever the name of its file."),
+                new Option(Option.ISSUER, true, "Dime encoded issuer identity, or subject id (UUID) or thumbprint of an identity in the trust store."),
+                new Option(Option.KEY, true, "Dime encoded key to use when issuing identities, this will be used to sign the identities."),
+                new Option(Option.SYS, true, "The system name that should be set in the issued identities."),
+                new Option(Option.ALLOW_CAP, false, "List of capabilities that are allowed to be requested in the IIRs, leave out for no limitation.", List.of("generic\t\t(default capability, generic use)", "identify\t(capability to identify, authenticated use)", "issue\t\t(capability to issue additional identities)")),
+                new Option(Option.REQUIRE_CAP, false, "List of capabilities that are must be requested in the IIRs, leave out for no limitation.", List.of("generic\t\t(default capability, generic use)", "identify\t(capability to identify, authenticated use)", "issue\t\t(capability to issue additional identities)")),
+                new Option(Option.AMB, false, "An ambit list that should be set in the issued identities."),
+                new Option(Option.MTD, false, "A method list that should be set in the issued identities."),
+                new Option(Option.DAYS, false, "Number of days issued identities should be valid, leave out for no expiration date."),
+                new Option(Option.EXCLUDE_CHN, false, "Will skip including the trust chain in the issued identities."),
+                new Option(Option.TRUSTSTORE, false, "Trust store directory to load the issuer from."),
+                new Option(Option.QUEUE, false, "Number of IIR files that may wait for a worker, further files are picked up once there is room. Defaults to four per worker."),
+                new Option(Option.WORKERS, false, "Number of worker threads issuing identities, defaults to number of processors."));
+        return array;
+    }
+
+    // Runs until stopped, so the global lock is only taken while the issuer is loaded (exclusively, as it is put into
+    // Dime.keyRing), and while every identity is issued
+    @Override
+    public boolean isDispatcher() {
+        return true;
+    }
+
+    @Override
+    public String execute() throws Exception {
+        String spool = arguments.get(Option.SPOOL);
+        if (spool == null || spool.length() == 0) {
+            DimeTool.showErrorMessage(this, "Missing required option: " + Option.SPOOL + ".", true);
+            return null;
+        }
+        String outDir = arguments.get(Option.OUT_DIR);
+        if (outDir == null || outDir.length() == 0) {
+            DimeTool.showErrorMessage(this, "Missing required option: " + Option.OUT_DIR + ".", true);
+            return null;
+        }
+        IssueOperation issueOperation = new IssueOperation();
+        issueOperation.arguments = arguments;
+        issueOperation.setStreams(getOutputStream(), getErrorStream());
+        IssueOperation.Issuer issuer;
+        Lock lock = DimeTool.exclusiveLock();
+        lock.lock();
+        try {
+            issuer = issueOperation.createIssuer();
+        } finally {
+            lock.unlock();
+        }
+        if (issuer == null) {
+            return null;
+        }
+        int workers = (int) Math.max(1L, arguments.getLong(Option.WORKERS, Runtime.getRuntime().availableProcessors()));
+        int queueSize = (int) Math.max(1L, arguments.getLong(Option.QUEUE, workers * 4L));
+        Spool watched = new Spool(Path.of(spool).toAbsolutePath(), Path.of(outDir).toAbsolutePath(), issuer, queueSize);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            Thread thread = new Thread(watched::work, "dimetool-watch-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+        try {
+            watched.watch();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (Thread thread: threads) {
+                thread.interrupt();
+            }
+        }
+        return null;
+    }
+
+    ///// PRIVATE /////
+
+    private static final long STABLE_SIZE_MILLIS = 100L;
+
+    // Every file is handled once: it is queued only while not already in flight, and it is moved out of the spool
+    // directory once handled. Identities are named by the thumbprint of the IIR and written before the IIR is moved, so
+    // an IIR that already has an identity, after a restart or under another file name, is moved without being issued
+    // again. Of files with the same IIR that are in flight at the same time, only the first is issued.
+    private final class Spool {
+
+        private final Path directory;
+        private final Path outDir;
+        private final Path done;
+        private final Path failed;
+        private final IssueOperation.Issuer issuer;
+        private final String fsync;
+        private final BlockingQueue<Path> queue;
+        private final Set<Path> inFlight = ConcurrentHashMap.newKeySet();
+        private final Map<String, Object> issuing = new ConcurrentHashMap<>();
+
+        Spool(Path directory, Path outDir, IssueOperation.Issuer issuer, int queueSize) throws IOException {
+            this.directory = directory;
+            this.outDir = outDir;
+            this.done = directory.resolve(WatchOperation.DONE_DIRECTORY);
+            this.failed = directory.resolve(WatchOperation.FAILED_DIRECTORY);
+            this.issuer = issuer;
+            this.fsync = OutputSink.fsync(arguments);
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+            Files.createDirectories(this.outDir);
+            Files.createDirectories(this.done);
+            Files.createDirectories(this.failed);
+        }
+
+        // Putting into the full queue blocks, which stops events from being taken. If the watch service drops events
+        // meanwhile, the whole directory is scanned again.
+        void watch() throws IOException, InterruptedException {
+            try (WatchService service = this.directory.getFileSystem().newWatchService()) {
+                this.directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+                scan(); // Files that arrived while not watching
+                while (true) {
+                    WatchKey key = service.take();
+                    for (WatchEvent<?> event: key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            scan();
+                        } else {
+                            enqueue(this.directory.resolve((Path) event.context()));
+                        }
+                    }
+                    if (!key.reset()) {
+                        throw new IOException("Spool directory is no longer accessible: " + this.directory);
+                    }
+                }
+            }
+        }
+
+        void work() {
+            try {
+                while (true) {
+                    Path file = this.queue.take();
+                    try {
+                        awaitStableSize(file);
+                        handle(file);
+                    } finally {
+                        this.inFlight.remove(file);
+                    }
+                }
+            } catch (InterruptedException e) {
+                /* ignore this, watching has stopped */
+            }
+        }
+
+        private void scan() throws IOException, InterruptedException {
+            List<Path> files;
+            try (Stream<Path> list = Files.list(this.directory)) {
+                files = list.sorted().collect(Collectors.toList());
+            }
+            for (Path file: files) {
+                enqueue(file);
+            }
+        }
+
+        private void enqueue(Path file) throws InterruptedException {
+            if (file.getFileName().toString().startsWith(".") || !Files.isRegularFile(file)) { return; }
+            if (this.inFlight.add(file)) {
+                this.queue.put(file);
+            }
+        }
+
+        // A file written in place raises events while it is being written, it is read once its size stops changing
+        private void awaitStableSize(Path file) throws InterruptedException {
+            try {
+                long size = -1L;
+                for (long current = Files.size(file); current != size; current = Files.size(file)) {
+                    size = current;
+                    Thread.sleep(WatchOperation.STABLE_SIZE_MILLIS);
+                }
+            } catch (IOException e) {
+                /* ignore this, the file is gone or reported when handled */
+            }
+        }
+
+        private void handle(Path file) {
+            if (!Files.isRegularFile(file)) { return; } // Handled before this event was taken
+            String name = file.getFileName().toString();
+            long start = System.nanoTime();
+            try {
+                String encoded = Utility.readFile(file.toFile()).trim();
+                IdentityIssuingRequest iir = Timings.time(Timings.IMPORT, () -> Item.importFromEncoded(encoded));
+                String thumbprint = Timings.time(Timings.CRYPTO, iir::generateThumbprint);
+                Path output = this.outDir.resolve(thumbprint + ".dime");
+                String state = "duplicate";
+                Object lock = this.issuing.computeIfAbsent(thumbprint, key -> new Object());
+                try {
+                    synchronized (lock) {
+                        if (!Files.exists(output)) {
+                            issue(iir, output);
+                            state = "issued";
+                        }
+                    }
+                } finally {
+                    this.issuing.remove(thumbprint, lock);
+                }
+                Files.move(file, this.done.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                report(name + "\t" + thumbprint, state, start);
+            } catch (Exception e) {
+                String message = e.getMessage() != null ? e.getMessage() : e.toString();
+                try {
+                    Files.move(file, this.failed.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    Files.writeString(this.failed.resolve(name + ".error"), message + "\n", StandardCharsets.UTF_8);
+                } catch (IOException ignored) {
+                    /* ignore this, the file is reported and tried again after a restart */
+                }
+                PrintStream errors = getErrorStream();
+                synchronized (errors) {
+                    errors.println("[ERROR] " + name + ": " + message);
+                }
+                report(name + "\t", "failed", start);
+            }
+        }
+
+        private void issue(IdentityIssuingRequest iir, Path output) throws Exception {
+            Identity identity;
+            Lock lock = DimeTool.sharedLock();
+            lock.lock();
+            try {
+                identity = this.issuer.issue(iir, UUID.randomUUID());
+            } finally {
+                lock.unlock();
+            }
+            String encodedIdentity = Timings.time(Timings.EXPORT, identity::exportToEncoded);
+            Timings.run(Timings.OUTPUT, () -> OutputSink.writeFile(output, this.fsync, encodedIdentity));
+        }
+
+        private void report(String name, String state, long start) {
+            PrintStream output = getOutputStream();
+            synchronized (output) {
+                output.println(name + "\t" + state + "\t" + (System.nanoTime() - start) / 1_000_000L);
+                output.flush();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,201 @@
+//
+//  DimeArchiveTest.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DimeArchiveTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsAllSegments() throws Exception {
+        Path file = this.directory.resolve("items.dime");
+        append(file, 0, 3);
+        append(file, 3, 2);
+        append(file, 5, 4);
+        try (DimeArchive archive = DimeArchive.open(file)) {
+            assertRecords(archive, 9);
+        }
+    }
+
+    // An append that is not committed leaves the archive as it was, and the next append continues from there
+    @Test
+    void truncatesUncommittedAppend() throws Exception {
+        Path file = this.directory.resolve("items.dime");
+        append(file, 0, 2);
+        long length = Files.size(file);
+        try (DimeArchive.Appender appender = DimeArchive.append(file)) {
+            appender.append(thumbprint(2), type(2), item(2));
+        }
+        assertEquals(length, Files.size(file));
+        append(file, 2, 2);
+        try (DimeArchive archive = DimeArchive.open(file)) {
+            assertRecords(archive, 4);
+        }
+    }
+
+    // An append interrupted before its footer was written leaves a torn tail, which is skipped when reading and cut off
+    // by the next append
+    @Test
+    void recoversFromTornTail() throws Exception {
+        Path file = this.directory.resolve("items.dime");
+        append(file, 0, 2);
+        long length = Files.size(file);
+        append(file, 2, 3);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(length + (Files.size(file) - length) / 2);
+        }
+        try (DimeArchive archive = DimeArchive.open(file)) {
+            assertRecords(archive, 2);
+        }
+        try (DimeArchive archive = DimeArchive.open(file, 0)) {
+            assertRecords(archive, 2);
+        }
+        append(file, 2, 2);
+        try (DimeArchive archive = DimeArchive.open(file)) {
+            assertRecords(archive, 4);
+        }
+    }
+
+    // A first append that was interrupted leaves an empty archive
+    @Test
+    void recoversFromTornFirstSegment() throws Exception {
+        Path file = this.directory.resolve("items.dime");
+        append(file, 0, 3);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(file) - 1);
+        }
+        try (DimeArchive archive = DimeArchive.open(file)) {
+            assertRecords(archive, 0);
+        }
+        append(file, 0, 1);
+        try (DimeArchive archive = DimeArchive.open(file)) {
+            assertRecords(archive, 1);
+        }
+    }
+
+    @Test
+    void looksUpExistingItemsWhileAppending() throws Exception {
+        Path file = this.directory.resolve("items.dime");
+        append(file, 0, 2);
+        try (DimeArchive.Appender appender = DimeArchive.append(file)) {
+            appender.append(thumbprint(2), type(2), item(2));
+            assertEquals(item(1), appender.get(thumbprint(1)));
+            assertNull(appender.get(thumbprint(2)));
+            appender.commit();
+        }
+    }
+
+    // Appends wait for each other, the second segment is chained after the first
+    @Test
+    void serializesConcurrentAppends() throws Exception {
+        Path file = this.directory.resolve("items.dime");
+        Thread other;
+        try (DimeArchive.Appender appender = DimeArchive.append(file)) {
+            appender.append(thumbprint(0), type(0), item(0));
+            other = new Thread(() -> {
+                try {
+                    append(file, 1, 1);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            other.start();
+            other.join(200);
+            assertTrue(other.isAlive());
+            appender.commit();
+        }
+        other.join();
+        try (DimeArchive archive = DimeArchive.open(file)) {
+            assertRecords(archive, 2);
+        }
+    }
+
+    // Archives too large for a single mapping are read by position
+    @Test
+    void readsUnmappedArchive() throws Exception {
+        Path file = this.directory.resolve("items.dime");
+        append(file, 0, 5);
+        append(file, 5, 5);
+        try (DimeArchive archive = DimeArchive.open(file, 0)) {
+            assertRecords(archive, 10);
+        }
+    }
+
+    @Test
+    void rejectsOtherFiles() throws Exception {
+        Path file = Files.writeString(this.directory.resolve("items.txt"), "not an archive\n");
+        assertFalse(DimeArchive.isArchive(file));
+        assertThrows(IOException.class, () -> DimeArchive.open(file));
+        assertThrows(IOException.class, () -> DimeArchive.append(file));
+        assertEquals("not an archive\n", Files.readString(file));
+    }
+
+    ///// PRIVATE /////
+
+    private static void append(Path file, int first, int count) throws IOException {
+        try (DimeArchive.Appender appender = DimeArchive.append(file)) {
+            for (int i = first; i < first + count; i++) {
+                appender.append(thumbprint(i), type(i), item(i));
+            }
+            appender.commit();
+        }
+    }
+
+    private static void assertRecords(DimeArchive archive, int count) throws IOException {
+        assertEquals(count, archive.size());
+        Iterator<DimeArchive.Entry> entries = archive.entries();
+        for (int i = 0; i < count; i++) {
+            DimeArchive.Entry entry = entries.next();
+            assertEquals(thumbprint(i), entry.thumbprint);
+            assertEquals(type(i), entry.type);
+            assertEquals(item(i), archive.readItem(entry));
+            assertEquals(item(i), archive.get(thumbprint(i)));
+        }
+        assertFalse(entries.hasNext());
+        assertNull(archive.get(thumbprint(count)));
+        List<String> keys = new ArrayList<>();
+        for (DimeArchive.Entry entry: archive.findByType("KEY")) {
+            keys.add(entry.thumbprint);
+        }
+        assertEquals((count + 1) / 2, keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            assertEquals(thumbprint(i * 2), keys.get(i));
+        }
+    }
+
+    private static String thumbprint(int number) {
+        return "thumbprint-" + number;
+    }
+
+    private static String type(int number) {
+        return number % 2 == 0 ? "KEY" : "ID";
+    }
+
+    private static String item(int number) {
+        return type(number) + ".item-" + number + ".signature";
+    }
+
+}
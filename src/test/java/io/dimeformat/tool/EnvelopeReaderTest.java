@@ -0,0 +1,77 @@
+//
+//  EnvelopeReaderTest.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EnvelopeReaderTest {
+
+    @Test
+    void readsAnonymousEnvelope() throws Exception {
+        try (EnvelopeReader reader = reader("Di:KEY.a.b:ID.c.d.e\n")) {
+            assertEquals("Di", reader.getHeader());
+            assertTrue(reader.isAnonymous());
+            assertEquals(List.of("1\tDi:KEY.a.b", "2\tDi:ID.c.d.e"), records(reader));
+            assertNull(reader.getSignature());
+        }
+    }
+
+    @Test
+    void readsSignedEnvelope() throws Exception {
+        try (EnvelopeReader reader = reader("Di.claims:MSG.a.b:MSG.c.d:signature")) {
+            assertEquals("Di.claims", reader.getHeader());
+            assertFalse(reader.isAnonymous());
+            assertEquals(List.of("1\tDi:MSG.a.b", "2\tDi:MSG.c.d"), records(reader));
+            assertEquals("signature", reader.getSignature());
+        }
+    }
+
+    // Sections longer than the read buffer are assembled across reads
+    @Test
+    void readsLargeSections() throws Exception {
+        String payload = "x".repeat(200_000);
+        try (EnvelopeReader reader = reader("Di:DAT.a." + payload + ":KEY.b.c")) {
+            assertEquals(List.of("1\tDi:DAT.a." + payload, "2\tDi:KEY.b.c"), records(reader));
+        }
+    }
+
+    @Test
+    void rejectsInvalidEnvelopes() {
+        assertThrows(IOException.class, () -> reader("KEY.a.b"));
+        assertThrows(UncheckedIOException.class, () -> records(reader("Di:KEY.a.b::KEY.c.d")));
+        assertThrows(UncheckedIOException.class, () -> records(reader("Di:KEY.a.b:signature:KEY.c.d")));
+    }
+
+    ///// PRIVATE /////
+
+    private static EnvelopeReader reader(String envelope) throws IOException {
+        return new EnvelopeReader(Channels.newChannel(new ByteArrayInputStream(envelope.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    private static List<String> records(EnvelopeReader reader) {
+        List<String> records = new ArrayList<>();
+        while (reader.hasNext()) {
+            RecordReader.Record record = reader.next();
+            records.add(record.name + "\t" + record.value);
+        }
+        return records;
+    }
+
+}
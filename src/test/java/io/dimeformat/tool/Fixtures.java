@@ -0,0 +1,62 @@
+//
+//  Fixtures.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import io.dimeformat.*;
+import io.dimeformat.enums.IdentityCapability;
+import io.dimeformat.enums.KeyCapability;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+// Items created for tests and benchmarks, the benchmarks are compiled against the test classes
+final class Fixtures {
+
+    static final String SYSTEM_NAME = "dimetool-bench";
+    static final IdentityCapability[] ISSUER_CAPABILITIES = new IdentityCapability[] { IdentityCapability.GENERIC, IdentityCapability.ISSUE };
+    static final IdentityCapability[] LEAF_CAPABILITIES = new IdentityCapability[] { IdentityCapability.GENERIC };
+
+    static Key signKey() throws Exception {
+        return Key.generateKey(List.of(KeyCapability.SIGN), Dime.VALID_FOR_1_YEAR, null, null, Dime.crypto.getDefaultSuiteName());
+    }
+
+    static Identity root(Key key) throws Exception {
+        return IdentityIssuingRequest.generateIIR(key, Fixtures.ISSUER_CAPABILITIES)
+                .selfIssueIdentity(UUID.randomUUID(), Dime.VALID_FOR_1_YEAR, key, Fixtures.SYSTEM_NAME, null, null);
+    }
+
+    static Identity issue(Key subjectKey, IdentityCapability[] capabilities, Key issuerKey, Identity issuer) throws Exception {
+        return IdentityIssuingRequest.generateIIR(subjectKey, capabilities)
+                .issueIdentity(UUID.randomUUID(), Dime.VALID_FOR_1_YEAR, issuerKey, issuer, true, capabilities, null, Fixtures.SYSTEM_NAME, null, null);
+    }
+
+    // Returns identities from root (index 0) to leaf, where the leaf is 'depth' issuing steps away from the root
+    static Identity[] chain(int depth) throws Exception {
+        Identity[] chain = new Identity[depth + 1];
+        Key issuerKey = Fixtures.signKey();
+        chain[0] = Fixtures.root(issuerKey);
+        for (int i = 1; i <= depth; i++) {
+            Key key = Fixtures.signKey();
+            chain[i] = Fixtures.issue(key, i < depth ? Fixtures.ISSUER_CAPABILITIES : Fixtures.LEAF_CAPABILITIES, issuerKey, chain[i - 1]);
+            issuerKey = key;
+        }
+        return chain;
+    }
+
+    static Data data(String payload) throws Exception {
+        Data data = new Data(null);
+        data.setPayload(payload.getBytes(StandardCharsets.UTF_8), null);
+        return data;
+    }
+
+    private Fixtures() { }
+
+}
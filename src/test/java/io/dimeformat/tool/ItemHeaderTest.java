@@ -0,0 +1,81 @@
+//
+//  ItemHeaderTest.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ItemHeaderTest {
+
+    @Test
+    void scansClaims() {
+        String json = " { \"uid\" : \"6c1a\", \"iat\":\"2022-10-17T10:00:00.000000Z\", \"exp\":\"2023-10-17T10:00:00.000000Z\", \"cap\":[\"generic\", \"identify\"], \"num\": 42, \"flag\":true,"
+                + " \"pri\":{\"nested\":[1,{\"b\":\"}\"}]}, \"ctx\":\"a\\\"b\\u0041\\n\" }";
+        List<ItemHeader> headers = ItemHeader.decode(item("ID", json));
+        assertEquals(1, headers.size());
+        ItemHeader header = headers.get(0);
+        assertEquals("ID", header.getType());
+        assertEquals("6c1a", header.getClaim("uid"));
+        assertEquals(Instant.parse("2022-10-17T10:00:00Z"), header.getIssuedAt());
+        assertEquals(Instant.parse("2023-10-17T10:00:00Z"), header.getExpiresAt());
+        assertEquals(List.of("generic", "identify"), header.getClaimValues("cap"));
+        assertEquals("42", header.getClaim("num"));
+        assertEquals("true", header.getClaim("flag"));
+        assertNull(header.getClaim("pri"));
+        assertEquals("a\"bA\n", header.getClaim("ctx"));
+        assertEquals(Set.of("uid", "iat", "exp", "cap", "num", "flag", "ctx"), header.getClaimNames());
+    }
+
+    @Test
+    void decodesEnvelopeItems() {
+        String envelope = ItemHeader.ENVELOPE_HEADER + ":" + item("KEY", "{\"uid\":\"1\"}") + ":" + item("MSG", "{\"uid\":\"2\",\"iss\":\"3\"}");
+        List<ItemHeader> headers = ItemHeader.decode(envelope + "\n");
+        assertEquals(2, headers.size());
+        assertEquals("KEY", headers.get(0).getType());
+        assertEquals("1", headers.get(0).getClaim("uid"));
+        assertEquals("MSG", headers.get(1).getType());
+        assertEquals("3", headers.get(1).getClaim("iss"));
+    }
+
+    @Test
+    void skipsEnvelopeSignature() {
+        String envelope = ItemHeader.ENVELOPE_HEADER + "." + claims("{\"iat\":\"2022-10-17T10:00:00.000000Z\"}") + ":" + item("KEY", "{\"uid\":\"1\"}")
+                + ":" + item("MSG", "{\"uid\":\"2\"}") + ":c2lnbmF0dXJl";
+        List<ItemHeader> headers = ItemHeader.decode(envelope);
+        assertEquals(2, headers.size());
+        assertEquals("KEY", headers.get(0).getType());
+        assertEquals("2", headers.get(1).getClaim("uid"));
+    }
+
+    @Test
+    void keepsMixedArraysUnscanned() {
+        ItemHeader header = ItemHeader.decode(item("ID", "{\"cap\":[\"generic\",1],\"uid\":\"1\"}")).get(0);
+        assertTrue(header.getClaimValues("cap").isEmpty());
+        assertEquals("1", header.getClaim("uid"));
+    }
+
+    ///// PRIVATE /////
+
+    private static String item(String type, String json) {
+        return type + "." + claims(json) + ".c2lnbmF0dXJl";
+    }
+
+    private static String claims(String json) {
+        return Base64.getEncoder().withoutPadding().encodeToString(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,84 @@
+//
+//  ServeOperationTest.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServeOperationTest {
+
+    @TempDir
+    Path directory;
+
+    // Issue is an exclusive operation, forwarding it must not wait for a lock held by the daemon itself
+    @Test
+    void forwardsExclusiveOperation() throws Exception {
+        Path socket = startDaemon();
+        String rootKey = run("key", "--cap", "sign");
+        String root = run("self", "--key", rootKey, "--sys", "test", "--cap", "generic", "issue");
+        String clientIir = run("iir", "--key", run("key", "--cap", "sign"));
+        Path issued = this.directory.resolve("client.id");
+        Integer status = assertTimeoutPreemptively(Duration.ofSeconds(30), () -> DimeClient.forward(socket.toString(),
+                new String[] { "issue", "--iir", clientIir, "--issuer", root, "--key", rootKey, "--sys", "test", "--out", issued.toString() }));
+        assertEquals(0, status);
+        assertTrue(Files.size(issued) > 0);
+        Path key = this.directory.resolve("next.key");
+        status = assertTimeoutPreemptively(Duration.ofSeconds(30), () -> DimeClient.forward(socket.toString(),
+                new String[] { "key", "--cap", "sign", "--out", key.toString() }));
+        assertEquals(0, status);
+        assertTrue(Files.size(key) > 0);
+    }
+
+    // A second daemon must not take over the socket of one that is running
+    @Test
+    void refusesLiveSocket() throws Exception {
+        Path socket = startDaemon();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int status = DimeTool.run(new String[] { "serve", "--socket", socket.toString() }, discard(), new PrintStream(err, true, StandardCharsets.UTF_8));
+        assertNotEquals(0, status);
+        assertTrue(err.toString(StandardCharsets.UTF_8).contains("already serving"));
+        assertEquals(0, DimeClient.forward(socket.toString(), new String[] { "key", "--cap", "sign", "--out", this.directory.resolve("k").toString() }));
+    }
+
+    ///// PRIVATE /////
+
+    private Path startDaemon() throws InterruptedException {
+        Path socket = this.directory.resolve("dimetool.sock");
+        Thread daemon = new Thread(() -> DimeTool.run(new String[] { "serve", "--socket", socket.toString() }, discard(), discard()));
+        daemon.setDaemon(true);
+        daemon.start();
+        for (int attempt = 0; attempt < 100 && !Files.exists(socket); attempt++) {
+            Thread.sleep(50);
+        }
+        assertTrue(Files.exists(socket), "Daemon did not start");
+        return socket;
+    }
+
+    private static String run(String... args) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(0, DimeTool.run(args, new PrintStream(out, true, StandardCharsets.UTF_8), discard()));
+        return out.toString(StandardCharsets.UTF_8).trim();
+    }
+
+    private static PrintStream discard() {
+        return new PrintStream(OutputStream.nullOutputStream());
+    }
+
+}
@@ -0,0 +1,63 @@
+//
+//  SignOperationTest.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import io.dimeformat.Data;
+import io.dimeformat.Envelope;
+import io.dimeformat.Item;
+import io.dimeformat.Key;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SignOperationTest {
+
+    @TempDir
+    Path directory;
+
+    // An envelope signed item by item must import as a whole, with every item verified by the key
+    @Test
+    void signsEnvelopeItems() throws Exception {
+        Key key = Fixtures.signKey();
+        Envelope envelope = new Envelope();
+        for (int i = 0; i < 3; i++) {
+            envelope.addItem(Fixtures.data("item " + i));
+        }
+        Data signed = Fixtures.data("signed");
+        signed.sign(key);
+        envelope.addItem(signed);
+        Path source = Files.writeString(this.directory.resolve("items.dime"), envelope.exportToEncoded() + "\n", StandardCharsets.UTF_8);
+        Path target = this.directory.resolve("signed.dime");
+
+        assertEquals(0, run("sign", "--envelope", source.toString(), "--key", key.exportToEncoded(), "--out", target.toString()));
+
+        Envelope result = Envelope.importFromEncoded(Files.readString(target, StandardCharsets.UTF_8).trim());
+        assertEquals(4, result.getItems().size());
+        for (Item item: result.getItems()) {
+            assertTrue(item.verify(key).isValid());
+        }
+        assertEquals(signed.exportToEncoded(), result.getItems().get(3).exportToEncoded());
+    }
+
+    ///// PRIVATE /////
+
+    private static int run(String... args) {
+        PrintStream discard = new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8);
+        return DimeTool.run(args, discard, discard);
+    }
+
+}
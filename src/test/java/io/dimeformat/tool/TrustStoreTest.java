@@ -0,0 +1,62 @@
+//
+//  TrustStoreTest.java
+//  The tool for DiME (Data Identity Message Envelope)
+//  A powerful universal data format that is built for secure, and integrity protected communication between trusted
+//  entities in a network.
+//
+//  Released under the MIT licence, see LICENSE for more information.
+//  Copyright (c) 2022 Shift Everywhere AB. All rights reserved.
+//
+package io.dimeformat.tool;
+
+import io.dimeformat.Identity;
+import io.dimeformat.Key;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrustStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void findsAddedIdentities() throws Exception {
+        Key rootKey = Fixtures.signKey();
+        Identity root = Fixtures.root(rootKey);
+        Identity leaf = Fixtures.issue(Fixtures.signKey(), Fixtures.LEAF_CAPABILITIES, rootKey, root);
+        List<String> added = TrustStore.open(this.directory).add(List.of(root, leaf, root));
+        assertEquals(2, added.size());
+
+        TrustStore store = TrustStore.open(this.directory);
+        assertEquals(2, store.size());
+        assertEquals(root.generateThumbprint(), store.findBySubject(root.getSubjectId()).get(0).thumbprint);
+        assertEquals(leaf.getSubjectId(), store.findByIssuer(root.getSubjectId()).get(0).subjectId);
+        assertNotNull(store.findByThumbprint(leaf.generateThumbprint()));
+        assertNull(store.findByThumbprint(rootKey.generateThumbprint()));
+        assertTrue(store.findBySubject(UUID.randomUUID()).isEmpty());
+        assertEquals(root.getSubjectId(), store.verifiersFor(leaf).get(0).subjectId);
+        assertEquals(leaf.generateThumbprint(), store.resolve(leaf.getSubjectId().toString()).generateThumbprint());
+    }
+
+    // Two stores opened before either adds must not replace each other's additions
+    @Test
+    void keepsConcurrentAdditions() throws Exception {
+        TrustStore first = TrustStore.open(this.directory);
+        TrustStore second = TrustStore.open(this.directory);
+        Identity one = Fixtures.root(Fixtures.signKey());
+        Identity two = Fixtures.root(Fixtures.signKey());
+        first.add(List.of(one));
+        second.add(List.of(two));
+        TrustStore store = TrustStore.open(this.directory);
+        assertEquals(2, store.size());
+        assertNotNull(store.findByThumbprint(one.generateThumbprint()));
+        assertNotNull(store.findByThumbprint(two.generateThumbprint()));
+    }
+
+}